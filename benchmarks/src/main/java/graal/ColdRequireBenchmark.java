@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// First requires of modules in a new context. With caches set to "shared", the contexts share
+// an engine and every cache, as a server running many contexts would: sources are only read
+// and parsed for the first one, and the benchmarks measure what each new context still pays.
+// With "none", every require reads and parses everything again.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColdRequireBenchmark {
+  @Param({"50"})
+  public int packages;
+
+  @Param({"8"})
+  public int depth;
+
+  @Param({"10000"})
+  public int jsonEntries;
+
+  @Param({"none", "shared"})
+  public String caches;
+
+  private Path root;
+  private Folder folder;
+  private Engine engine;
+  private RequireOptions sharedOptions;
+
+  private Context context;
+  private Module module;
+
+  @Setup
+  public void setUp() throws IOException {
+    root = NodeModulesGenerator.createTemporary(packages, depth, jsonEntries);
+    folder = FilesystemFolder.create(root.toFile(), "UTF-8");
+    if (caches.equals("shared")) {
+      engine = Engine.create();
+      sharedOptions =
+          RequireOptions.create()
+              .withSharedEngine(engine)
+              .withModuleCache(new ModuleCache())
+              .withNegativeCache(new NegativeCache(1, TimeUnit.MINUTES))
+              .withResolutionCache(new ResolutionCache())
+              .withPackageJsonCache(new PackageJsonCache());
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void createContext() {
+    if (engine != null) {
+      context = Context.newBuilder("js").engine(engine).build();
+      module = Require.enable(context, folder, sharedOptions);
+    } else {
+      context = Context.create();
+      module = Require.enable(context, folder);
+    }
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeContext() {
+    context.close();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (engine != null) {
+      engine.close();
+    }
+    NodeModulesGenerator.delete(root);
+  }
+
+  @Benchmark
+  public Value relative() {
+    return module.require("./lib/relative");
+  }
+
+  // Loads every package, each through its package.json and a climb up to the root node_modules
+  @Benchmark
+  public Value bare() {
+    return module.require("pkg-0");
+  }
+
+  @Benchmark
+  public Value deepNodeModules() {
+    return module.require(NodeModulesGenerator.deepEntry(depth)).execute();
+  }
+
+  @Benchmark
+  public Value smallJson() {
+    return module.require("./data/small.json");
+  }
+
+  @Benchmark
+  public Value largeJson() {
+    return module.require("./data/large.json");
+  }
+
+  @Benchmark
+  public Value circular() {
+    return module.require("./cycles/a");
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Creates a context, enables require in it and loads the whole tree from index.js, over and
+// over, as a server creating a context per request would. Runs on several threads to show how
+// the shared caches hold up under contention.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextBenchmark {
+  @Param({"20"})
+  public int packages;
+
+  // "none" creates every context on its own; "shared" shares an engine and the caches
+  @Param({"none", "shared"})
+  public String caches;
+
+  private Path root;
+  private Folder folder;
+  private Engine engine;
+  private RequireOptions sharedOptions;
+
+  @Setup
+  public void setUp() throws IOException {
+    root = NodeModulesGenerator.createTemporary(packages, 1, 10);
+    folder = FilesystemFolder.create(root.toFile(), "UTF-8");
+    if (caches.equals("shared")) {
+      engine = Engine.create();
+      sharedOptions =
+          RequireOptions.create()
+              .withSharedEngine(engine)
+              .withModuleCache(new ModuleCache())
+              .withNegativeCache(new NegativeCache(1, TimeUnit.MINUTES))
+              .withResolutionCache(new ResolutionCache())
+              .withPackageJsonCache(new PackageJsonCache());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    if (engine != null) {
+      engine.close();
+    }
+    NodeModulesGenerator.delete(root);
+  }
+
+  @Benchmark
+  public void createContext(Blackhole blackhole) {
+    if (engine != null) {
+      try (Context context = Context.newBuilder("js").engine(engine).build()) {
+        blackhole.consume(Require.enable(context, folder, sharedOptions).require("./index"));
+      }
+    } else {
+      try (Context context = Context.create()) {
+        blackhole.consume(Require.enable(context, folder).require("./index"));
+      }
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void createContextConcurrently(Blackhole blackhole) {
+    createContext(blackhole);
+  }
+}
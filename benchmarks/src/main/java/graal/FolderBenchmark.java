@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Reads the files require looks at when loading a package, straight from each kind of folder,
+// without a context: the package.json, the main file, and a miss like the ones for the
+// extensions require tries before finding the file.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FolderBenchmark {
+  @Param({"50"})
+  public int packages;
+
+  @Param({"filesystem", "indexedFilesystem", "resource", "indexedResource"})
+  public String type;
+
+  private Path root;
+  private URLClassLoader loader;
+  private Folder folder;
+
+  @Setup
+  public void setUp() throws IOException {
+    // Resources are read from the same files, through a class loader over the parent folder
+    Path parent = Files.createTempDirectory("graal-commonjs-benchmark");
+    root = parent.resolve("modules");
+    NodeModulesGenerator.generate(root, packages, 1, 10);
+    loader = new URLClassLoader(new URL[] {parent.toUri().toURL()}, null);
+
+    File file = root.toFile();
+    switch (type) {
+      case "filesystem":
+        folder = FilesystemFolder.create(file, "UTF-8");
+        break;
+      case "indexedFilesystem":
+        folder = IndexedFilesystemFolder.create(file, "UTF-8");
+        break;
+      case "resource":
+        folder = ResourceFolder.create(loader, "modules", "UTF-8");
+        break;
+      case "indexedResource":
+        folder = IndexedResourceFolder.create(loader, "modules", "UTF-8");
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown folder type: " + type);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    loader.close();
+    NodeModulesGenerator.delete(root.getParent());
+  }
+
+  @Benchmark
+  public void readPackages(Blackhole blackhole) {
+    Folder nodeModules = folder.getFolder("node_modules");
+    for (int i = 0; i < packages; i++) {
+      Folder pkg = nodeModules.getFolder("pkg-" + i);
+      blackhole.consume(pkg.getFile("package.json"));
+      Folder lib = pkg.getFolder("lib");
+      blackhole.consume(lib.getFile("main"));
+      blackhole.consume(lib.getFile("main.js"));
+    }
+  }
+}
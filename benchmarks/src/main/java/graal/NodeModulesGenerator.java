@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+// Writes a synthetic module tree for the benchmarks to require from:
+//
+//   index.js                  requires pkg-0 and ./lib/relative
+//   lib/relative.js
+//   node_modules/pkg-N/       with a package.json pointing at lib/main.js, which requires
+//                             ./util and pkg-(N+1), so that loading pkg-0 loads every package
+//   deep/d1/.../dN/entry.js   exports a function requiring pkg-0 from the bottom of the tree
+//   data/small.json, data/large.json
+//   cycles/a.js, cycles/b.js  which require each other
+//
+// It can be run from the command line to look at what the benchmarks load:
+//
+//   java graal.NodeModulesGenerator <folder> [packages] [depth] [json entries]
+public class NodeModulesGenerator {
+  public static final int DEFAULT_PACKAGES = 50;
+  public static final int DEFAULT_DEPTH = 8;
+  public static final int DEFAULT_JSON_ENTRIES = 10000;
+
+  public static void generate(Path root, int packages, int depth, int jsonEntries)
+      throws IOException {
+    write(
+        root.resolve("index.js"),
+        "module.exports = [require('pkg-0'), require('./lib/relative')];");
+    write(root.resolve("lib/relative.js"), "exports.value = 1;");
+
+    for (int i = 0; i < packages; i++) {
+      Path pkg = root.resolve("node_modules/pkg-" + i);
+      write(
+          pkg.resolve("package.json"),
+          "{\"name\": \"pkg-" + i + "\", \"main\": \"lib/main.js\"}");
+      write(pkg.resolve("lib/util.js"), "exports.id = " + i + ";");
+      StringBuilder main = new StringBuilder("var util = require('./util');\n");
+      if (i + 1 < packages) {
+        main.append("var next = require('pkg-").append(i + 1).append("');\n");
+      }
+      main.append("module.exports = {name: 'pkg-").append(i).append("', util: util};\n");
+      write(pkg.resolve("lib/main.js"), main.toString());
+    }
+
+    Path deep = root.resolve("deep");
+    for (int i = 1; i <= depth; i++) {
+      deep = deep.resolve("d" + i);
+    }
+    write(deep.resolve("entry.js"), "module.exports = function() { return require('pkg-0'); };");
+
+    write(root.resolve("data/small.json"), json(10));
+    write(root.resolve("data/large.json"), json(jsonEntries));
+
+    write(
+        root.resolve("cycles/a.js"),
+        "exports.loaded = false;\nvar b = require('./b');\nexports.loaded = true;");
+    write(root.resolve("cycles/b.js"), "var a = require('./a');\nexports.sawA = a.loaded;");
+  }
+
+  // The path of entry.js under deep/, relative to the root
+  public static String deepEntry(int depth) {
+    StringBuilder path = new StringBuilder("./deep");
+    for (int i = 1; i <= depth; i++) {
+      path.append("/d").append(i);
+    }
+    return path.append("/entry").toString();
+  }
+
+  public static Path createTemporary(int packages, int depth, int jsonEntries)
+      throws IOException {
+    Path root = Files.createTempDirectory("graal-commonjs-benchmark");
+    generate(root, packages, depth, jsonEntries);
+    return root;
+  }
+
+  public static void delete(Path root) throws IOException {
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException ex) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private static String json(int entries) {
+    StringBuilder json = new StringBuilder("{\n");
+    for (int i = 0; i < entries; i++) {
+      json.append("  \"key").append(i).append("\": {\"id\": ").append(i);
+      json.append(", \"name\": \"entry ").append(i).append("\", \"tags\": [\"a\", \"b\"]}");
+      json.append(i + 1 < entries ? ",\n" : "\n");
+    }
+    return json.append("}\n").toString();
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: NodeModulesGenerator <folder> [packages] [depth] [json entries]");
+      System.exit(1);
+    }
+
+    generate(
+        new File(args[0]).toPath(),
+        args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PACKAGES,
+        args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DEPTH,
+        args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_JSON_ENTRIES);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Requires of modules that are already loaded in the context, which is what most requires are
+// once an application is up: the cost is resolving the specifier again and finding the module.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequireBenchmark {
+  @Param({"50"})
+  public int packages;
+
+  @Param({"8"})
+  public int depth;
+
+  // "none" for the defaults, "all" for every cache of RequireOptions
+  @Param({"none", "all"})
+  public String caches;
+
+  private Path root;
+  private Context context;
+  private Module module;
+  private Value deepEntry;
+
+  @Setup
+  public void setUp() throws IOException {
+    root = NodeModulesGenerator.createTemporary(packages, depth, 1000);
+    context = Context.create();
+    RequireOptions options = RequireOptions.create();
+    if (caches.equals("all")) {
+      options
+          .withNegativeCache(new NegativeCache(1, TimeUnit.MINUTES))
+          .withResolutionCache(new ResolutionCache())
+          .withPackageJsonCache(new PackageJsonCache());
+    }
+    module = Require.enable(context, FilesystemFolder.create(root.toFile(), "UTF-8"), options);
+
+    // Everything gets loaded once, so that the benchmarks only measure warm requires
+    module.require("./index");
+    module.require("./data/large.json");
+    module.require("./cycles/a");
+    deepEntry = module.require(NodeModulesGenerator.deepEntry(depth));
+    deepEntry.execute();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    context.close();
+    NodeModulesGenerator.delete(root);
+  }
+
+  @Benchmark
+  public Value relative() {
+    return module.require("./lib/relative");
+  }
+
+  @Benchmark
+  public Value relativeWithExtension() {
+    return module.require("./lib/relative.js");
+  }
+
+  @Benchmark
+  public Value bare() {
+    return module.require("pkg-0");
+  }
+
+  // Requires pkg-0 from the bottom of deep/, which climbs every folder looking for node_modules
+  @Benchmark
+  public Value deepNodeModules() {
+    return deepEntry.execute();
+  }
+
+  @Benchmark
+  public Value json() {
+    return module.require("./data/large.json");
+  }
+
+  @Benchmark
+  public Value circular() {
+    return module.require("./cycles/a");
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+
+// The requires made with require.async in a context. Resolving and reading modules happens on
+// an executor; what's left, running the modules and settling the promises, has to happen on
+// the thread using the context, so it's queued until that thread runs it (see
+// Module.runPendingRequires).
+class AsyncRequires {
+  private static ExecutorService defaultExecutor;
+
+  private final ExecutorService executor;
+  private final Queue<Runnable> completions = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger outstanding = new AtomicInteger();
+  // What specifiers resolved to, for when the options have no resolution cache
+  private final ResolutionCache resolutions = new ResolutionCache();
+  private Value promiseFactory;
+  private Value errorConstructor;
+
+  AsyncRequires(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  // Runs io on the executor, then queues completion for the thread of the context. Errors of io
+  // are left for completion to find out about.
+  void submit(Runnable io, Runnable completion) {
+    outstanding.incrementAndGet();
+    try {
+      getExecutor()
+          .execute(
+              () -> {
+                try {
+                  io.run();
+                } catch (RuntimeException ex) {
+                  // The completion will run into it again
+                } finally {
+                  complete(completion);
+                }
+              });
+    } catch (RejectedExecutionException ex) {
+      // The whole require happens on the thread of the context then
+      complete(completion);
+    }
+  }
+
+  private void complete(Runnable completion) {
+    completions.add(completion);
+    synchronized (completions) {
+      completions.notifyAll();
+    }
+  }
+
+  int runCompletions() {
+    int count = 0;
+    Runnable completion;
+    while ((completion = completions.poll()) != null) {
+      outstanding.decrementAndGet();
+      completion.run();
+      count++;
+    }
+    return count;
+  }
+
+  // Runs completions as they come until none are outstanding. Returns false on timeout.
+  boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while (true) {
+      runCompletions();
+      if (outstanding.get() == 0) {
+        return true;
+      }
+
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        return false;
+      }
+      synchronized (completions) {
+        if (completions.isEmpty()) {
+          TimeUnit.NANOSECONDS.timedWait(completions, remaining);
+        }
+      }
+    }
+  }
+
+  int getOutstanding() {
+    return outstanding.get();
+  }
+
+  ResolutionCache getResolutions() {
+    return resolutions;
+  }
+
+  // A promise whose executor function is start
+  Value newPromise(Context context, ProxyExecutable start) throws PolyglotException {
+    if (promiseFactory == null) {
+      promiseFactory = context.eval("js", "(function(start) { return new Promise(start); })");
+    }
+    return promiseFactory.execute(start);
+  }
+
+  // What a promise gets rejected with when a require fails
+  Value toError(Context context, RuntimeException ex) throws PolyglotException {
+    if (ex instanceof PolyglotException && ((PolyglotException) ex).isGuestException()) {
+      return ((PolyglotException) ex).getGuestObject();
+    }
+    if (errorConstructor == null) {
+      errorConstructor = context.getBindings("js").getMember("Error");
+    }
+    return errorConstructor.newInstance(ex.getMessage());
+  }
+
+  private ExecutorService getExecutor() {
+    return executor != null ? executor : getDefaultExecutor();
+  }
+
+  // Virtual threads when the JVM has them, since reads mostly wait on I/O; otherwise a pool of
+  // daemon threads, shared by every context
+  private static synchronized ExecutorService getDefaultExecutor() {
+    if (defaultExecutor == null) {
+      try {
+        defaultExecutor =
+            (ExecutorService)
+                Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException ex) {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor pool =
+            new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                  Thread thread = new Thread(runnable, "module-async-require");
+                  thread.setDaemon(true);
+                  return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        defaultExecutor = pool;
+      }
+    }
+    return defaultExecutor;
+  }
+}
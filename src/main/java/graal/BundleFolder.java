@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serves modules from a bundle written by ModuleBundler. The bundle is mapped in memory, and
+// only its index is read when opening it: the code of a module is decoded when it is asked
+// for. The bundle also carries the resolutions found while bundling, which getResolutionCache
+// returns so that require goes straight to the right module without probing any folder.
+//
+// The format is, with every number a big-endian int and every string its length in bytes
+// followed by its UTF-8 bytes:
+//
+//   magic, version, file count, then for each file (modules and package.json files): path, code
+//   resolution count, then for each resolution: folder path, specifier, resolved path
+//
+// Paths are relative to the root of the bundle, which is "/".
+public class BundleFolder extends AbstractFolder {
+  static final int MAGIC = 0x434a5342;
+  static final int VERSION = 1;
+
+  private Bundle bundle;
+  // Path of this folder inside the bundle, either empty or ending with a slash
+  private String prefix;
+
+  private BundleFolder(Bundle bundle, String prefix, Folder parent, String displayPath) {
+    super(parent, displayPath);
+    this.bundle = bundle;
+    this.prefix = prefix;
+  }
+
+  @Override
+  public String getFile(String name) {
+    return bundle.read(prefix + name);
+  }
+
+  @Override
+  public Folder getFolder(String name) {
+    String path = prefix + name + "/";
+    if (!bundle.directories.contains(path)) {
+      return null;
+    }
+
+    return bundle.folders.computeIfAbsent(
+        path, p -> new BundleFolder(bundle, p, this, getPath() + name + "/"));
+  }
+
+  // Returns a new cache holding the resolutions of the bundle, to pass in the RequireOptions of
+  // the contexts loading from it
+  public ResolutionCache getResolutionCache() {
+    ResolutionCache cache = new ResolutionCache();
+    for (String[] resolution : bundle.resolutions) {
+      cache.put(resolution[0], resolution[1], resolution[2]);
+    }
+    return cache;
+  }
+
+  int getResolutionCount() {
+    return bundle.resolutions.length;
+  }
+
+  public static BundleFolder open(Path path) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    try {
+      return new BundleFolder(new Bundle(buffer), "", null, "/");
+    } catch (BufferUnderflowException | IllegalArgumentException ex) {
+      throw new IOException("Corrupted module bundle: " + path, ex);
+    }
+  }
+
+  private static class Bundle {
+    final ByteBuffer buffer;
+    // Offset and length of the code of each module, by path
+    final Map<String, long[]> modules = new HashMap<>();
+    final Set<String> directories = new HashSet<>();
+    final String[][] resolutions;
+    final Map<String, BundleFolder> folders = new ConcurrentHashMap<>();
+
+    Bundle(ByteBuffer buffer) throws IOException {
+      this.buffer = buffer;
+
+      if (buffer.getInt() != MAGIC) {
+        throw new IOException("Not a module bundle");
+      }
+      if (buffer.getInt() != VERSION) {
+        throw new IOException("Unsupported module bundle version");
+      }
+
+      int moduleCount = buffer.getInt();
+      for (int i = 0; i < moduleCount; i++) {
+        String path = readString();
+        int length = buffer.getInt();
+        modules.put(path, new long[] {buffer.position(), length});
+        buffer.position(buffer.position() + length);
+
+        for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+          directories.add(path.substring(0, slash + 1));
+        }
+      }
+
+      int resolutionCount = buffer.getInt();
+      resolutions = new String[resolutionCount][];
+      for (int i = 0; i < resolutionCount; i++) {
+        resolutions[i] = new String[] {readString(), readString(), readString()};
+      }
+    }
+
+    private String readString() {
+      byte[] bytes = new byte[buffer.getInt()];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    String read(String path) {
+      long[] location = modules.get(path);
+      if (location == null) {
+        return null;
+      }
+
+      // Each reader gets its own view of the buffer, so that they don't fight over its position
+      ByteBuffer code = buffer.duplicate();
+      code.position((int) location[0]);
+      code.limit((int) (location[0] + location[1]));
+      return StandardCharsets.UTF_8.decode(code).toString();
+    }
+  }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.PolyglotException;
+
+// A pool of contexts built ahead of time on a shared engine, with require enabled and a set of
+// modules already loaded, for services that would otherwise pay for creating a context and
+// loading the same libraries on every request. The contexts share the engine (so sources are
+// parsed once) and the module cache (so they are read once).
+//
+// Contexts are borrowed by one thread at a time, and given back by closing them. They're
+// replaced with fresh ones after a number of uses or of bytes allocated while borrowed, so that
+// state leaking from one use to the next stays bounded. Replacements are built by the thread
+// giving the old context back, so borrowers don't wait for them.
+public class ContextPool implements Closeable {
+  private final Folder root;
+  private final ContextPoolOptions options;
+  private final RequireOptions requireOptions;
+  private final Engine engine;
+  private final boolean ownsEngine;
+
+  private final Object lock = new Object();
+  private final Deque<PooledContext> idle = new ArrayDeque<>();
+  // Contexts created (or being created) and not closed yet
+  private int live;
+  private int borrowed;
+  private boolean closed;
+
+  private long borrowCount;
+  private long waitCount;
+  private long totalWaitTime;
+  private long maxWaitTime;
+  private long createdCount;
+  private long recycledCount;
+
+  private ContextPool(Folder root, ContextPoolOptions options) {
+    this.root = root;
+    this.options = options;
+    this.ownsEngine = options.getEngine() == null;
+    this.engine = ownsEngine ? Engine.create() : options.getEngine();
+
+    // A copy, so that the options of the caller aren't changed. Sources are cached per engine
+    // without having to ask for it, and the contexts are all built on ours.
+    RequireOptions requireOptions =
+        options.getRequireOptions() != null
+            ? options.getRequireOptions().copy()
+            : RequireOptions.create();
+    if (requireOptions.getModuleCache() == null) {
+      requireOptions.withModuleCache(new ModuleCache());
+    }
+    this.requireOptions = requireOptions;
+  }
+
+  // Builds all the contexts of the pool before returning
+  public static ContextPool create(Folder root, ContextPoolOptions options)
+      throws PolyglotException {
+    ContextPool pool = new ContextPool(root, options);
+    try {
+      for (int i = 0; i < options.getSize(); i++) {
+        synchronized (pool.lock) {
+          pool.live++;
+        }
+        pool.addIdle(pool.createContext());
+      }
+    } catch (RuntimeException ex) {
+      pool.close();
+      throw ex;
+    }
+    return pool;
+  }
+
+  // Waits for a context to be available
+  public PooledContext borrow() throws InterruptedException, PolyglotException {
+    return borrow(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+  }
+
+  // Returns null if no context was available in time
+  public PooledContext borrow(long timeout, TimeUnit unit)
+      throws InterruptedException, PolyglotException {
+    long start = System.nanoTime();
+    long remaining = unit.toNanos(timeout);
+    boolean waited = false;
+    synchronized (lock) {
+      while (true) {
+        if (closed) {
+          throw new IllegalStateException("The pool is closed");
+        }
+
+        PooledContext context = idle.poll();
+        if (context != null) {
+          recordBorrow(context, waited, System.nanoTime() - start);
+          return context;
+        }
+
+        // A replacement that failed to build left room for a new context
+        if (live < options.getSize()) {
+          live++;
+          break;
+        }
+
+        if (remaining <= 0) {
+          recordWait(System.nanoTime() - start);
+          return null;
+        }
+        waited = true;
+        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+        remaining = unit.toNanos(timeout) - (System.nanoTime() - start);
+      }
+    }
+
+    PooledContext context = createContext();
+    synchronized (lock) {
+      recordBorrow(context, true, System.nanoTime() - start);
+    }
+    return context;
+  }
+
+  void giveBack(PooledContext context) {
+    boolean replace;
+    synchronized (lock) {
+      if (!context.borrowed) {
+        return;
+      }
+      context.borrowed = false;
+      borrowed--;
+      context.uses++;
+      // Allocation counters are per thread, so we can only tell what the borrower allocated
+      // when the context is given back on the thread that borrowed it
+      if (Thread.currentThread().getId() == context.borrowingThread) {
+        context.allocatedBytes += allocatedBytes() - context.allocatedAtBorrow;
+      }
+
+      if (!closed && !context.invalid && !isWornOut(context)) {
+        idle.push(context);
+        lock.notify();
+        return;
+      }
+      replace = !closed;
+      if (replace) {
+        recycledCount++;
+      }
+    }
+
+    if (!replace) {
+      closeContext(context);
+      return;
+    }
+
+    // The replacement takes over the slot of the old context, which stays counted in live, so
+    // that borrowers waiting meanwhile don't build a context of their own on top of it
+    try {
+      context.getContext().close();
+    } finally {
+      try {
+        addIdle(createContext());
+      } catch (RuntimeException ex) {
+        // The slot is free again: the next borrow will try, and report the error if it
+        // happens again
+      }
+    }
+  }
+
+  private boolean isWornOut(PooledContext context) {
+    return (options.getMaxUses() > 0 && context.uses >= options.getMaxUses())
+        || (options.getMaxAllocatedBytes() > 0
+            && context.allocatedBytes >= options.getMaxAllocatedBytes());
+  }
+
+  // Creates a context the caller already counted in live
+  private PooledContext createContext() throws PolyglotException {
+    Context context = null;
+    try {
+      context = options.getContextBuilder().get().engine(engine).build();
+      Module module = Require.enable(context, root, requireOptions);
+      for (String specifier : options.getModules()) {
+        module.require(specifier);
+      }
+      synchronized (lock) {
+        createdCount++;
+      }
+      return new PooledContext(this, context, module);
+    } catch (RuntimeException ex) {
+      if (context != null) {
+        context.close();
+      }
+      release();
+      throw ex;
+    }
+  }
+
+  private void addIdle(PooledContext context) {
+    synchronized (lock) {
+      if (!closed) {
+        idle.push(context);
+        lock.notify();
+        return;
+      }
+    }
+    closeContext(context);
+  }
+
+  private void closeContext(PooledContext context) {
+    try {
+      context.getContext().close();
+    } finally {
+      release();
+    }
+  }
+
+  // Frees the slot of a context that was closed, or couldn't be built
+  private void release() {
+    synchronized (lock) {
+      live--;
+      if (closed && live == 0 && ownsEngine) {
+        engine.close();
+      }
+      lock.notify();
+    }
+  }
+
+  private void recordBorrow(PooledContext context, boolean waited, long waitTime) {
+    context.borrowed = true;
+    context.borrowingThread = Thread.currentThread().getId();
+    context.allocatedAtBorrow = allocatedBytes();
+    borrowed++;
+    borrowCount++;
+    if (waited) {
+      recordWait(waitTime);
+    }
+  }
+
+  private void recordWait(long waitTime) {
+    waitCount++;
+    totalWaitTime += waitTime;
+    maxWaitTime = Math.max(maxWaitTime, waitTime);
+  }
+
+  private long allocatedBytes() {
+    if (options.getMaxAllocatedBytes() <= 0) {
+      return 0;
+    }
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  public ContextPoolStats stats() {
+    synchronized (lock) {
+      return new ContextPoolStats(
+          options.getSize(),
+          idle.size(),
+          borrowed,
+          borrowCount,
+          waitCount,
+          totalWaitTime,
+          maxWaitTime,
+          createdCount,
+          recycledCount);
+    }
+  }
+
+  // Closes the idle contexts right away, and the borrowed ones when they're given back
+  @Override
+  public void close() {
+    Deque<PooledContext> closing;
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      closing = new ArrayDeque<>(idle);
+      idle.clear();
+      lock.notifyAll();
+      if (live == 0 && ownsEngine) {
+        engine.close();
+      }
+    }
+
+    for (PooledContext context : closing) {
+      closeContext(context);
+    }
+  }
+}
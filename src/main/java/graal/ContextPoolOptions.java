@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+
+// Settings of a ContextPool
+public class ContextPoolOptions {
+  private int size = Runtime.getRuntime().availableProcessors();
+  private Engine engine;
+  private Supplier<Context.Builder> contextBuilder = () -> Context.newBuilder("js");
+  private RequireOptions requireOptions;
+  private List<String> modules = Collections.emptyList();
+  private int maxUses;
+  private long maxAllocatedBytes;
+
+  public static ContextPoolOptions create() {
+    return new ContextPoolOptions();
+  }
+
+  // Number of contexts in the pool, which defaults to the number of processors
+  public ContextPoolOptions withSize(int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("The pool needs at least one context");
+    }
+    this.size = size;
+    return this;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  // The engine to build the contexts on. By default, the pool creates one and closes it along
+  // with the pool.
+  public ContextPoolOptions withEngine(Engine engine) {
+    this.engine = engine;
+    return this;
+  }
+
+  public Engine getEngine() {
+    return engine;
+  }
+
+  // Builders for the contexts, to set their options or host access. The pool sets their engine.
+  public ContextPoolOptions withContextBuilder(Supplier<Context.Builder> contextBuilder) {
+    this.contextBuilder = contextBuilder;
+    return this;
+  }
+
+  public Supplier<Context.Builder> getContextBuilder() {
+    return contextBuilder;
+  }
+
+  // The options given to Require.enable for every context. The pool adds the caches it needs
+  // for the contexts to share sources, when they're missing.
+  public ContextPoolOptions withRequireOptions(RequireOptions requireOptions) {
+    this.requireOptions = requireOptions;
+    return this;
+  }
+
+  public RequireOptions getRequireOptions() {
+    return requireOptions;
+  }
+
+  // Modules required in every context before it's handed out, in this order
+  public ContextPoolOptions withModules(List<String> modules) {
+    this.modules = new ArrayList<>(modules);
+    return this;
+  }
+
+  public List<String> getModules() {
+    return modules;
+  }
+
+  // Contexts are closed and replaced after being borrowed this many times. Zero, the default,
+  // means no limit.
+  public ContextPoolOptions withMaxUses(int maxUses) {
+    this.maxUses = maxUses;
+    return this;
+  }
+
+  public int getMaxUses() {
+    return maxUses;
+  }
+
+  // Contexts are closed and replaced once the threads using them allocated this many bytes
+  // while they were borrowed, as an estimate of how much garbage their heaps may be holding on
+  // to. Zero, the default, means no limit. Only works on JVMs that measure the memory
+  // allocated by threads, like HotSpot.
+  public ContextPoolOptions withMaxAllocatedBytes(long maxAllocatedBytes) {
+    this.maxAllocatedBytes = maxAllocatedBytes;
+    return this;
+  }
+
+  public long getMaxAllocatedBytes() {
+    return maxAllocatedBytes;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+// A point-in-time snapshot of the state and counters of a ContextPool
+public class ContextPoolStats {
+  private final int size;
+  private final int idleCount;
+  private final int borrowedCount;
+  private final long borrowCount;
+  private final long waitCount;
+  private final long totalWaitTime;
+  private final long maxWaitTime;
+  private final long createdCount;
+  private final long recycledCount;
+
+  public ContextPoolStats(
+      int size,
+      int idleCount,
+      int borrowedCount,
+      long borrowCount,
+      long waitCount,
+      long totalWaitTime,
+      long maxWaitTime,
+      long createdCount,
+      long recycledCount) {
+    this.size = size;
+    this.idleCount = idleCount;
+    this.borrowedCount = borrowedCount;
+    this.borrowCount = borrowCount;
+    this.waitCount = waitCount;
+    this.totalWaitTime = totalWaitTime;
+    this.maxWaitTime = maxWaitTime;
+    this.createdCount = createdCount;
+    this.recycledCount = recycledCount;
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  // Contexts ready to be borrowed
+  public int getIdleCount() {
+    return idleCount;
+  }
+
+  public int getBorrowedCount() {
+    return borrowedCount;
+  }
+
+  // Fraction of the pool that is borrowed
+  public double getOccupancy() {
+    return (double) borrowedCount / size;
+  }
+
+  public long getBorrowCount() {
+    return borrowCount;
+  }
+
+  // Borrows that had to wait for a context to be returned (or created)
+  public long getWaitCount() {
+    return waitCount;
+  }
+
+  // Total time spent waiting in borrow, in nanoseconds
+  public long getTotalWaitTime() {
+    return totalWaitTime;
+  }
+
+  public long getMaxWaitTime() {
+    return maxWaitTime;
+  }
+
+  public long getCreatedCount() {
+    return createdCount;
+  }
+
+  // Contexts closed for being used too much, or invalidated
+  public long getRecycledCount() {
+    return recycledCount;
+  }
+}
@@ -8,20 +8,37 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import org.apache.commons.io.IOUtils;
 
 public class FilesystemFolder extends AbstractFolder {
+  // How files are read: through a regular input stream, or through a FileChannel (mapping files
+  // in memory above a size threshold) and a reused decoder, which allocates a lot less for large
+  // files.
+  public enum ReadMode {
+    STREAM,
+    NIO
+  }
+
   private File root;
   private String encoding = "UTF-8";
+  private NioFileReader reader;
 
-  private FilesystemFolder(File root, Folder parent, String path, String encoding) {
+  private FilesystemFolder(
+      File root, Folder parent, String path, String encoding, NioFileReader reader) {
     super(parent, path);
     this.root = root;
     this.encoding = encoding;
+    this.reader = reader;
   }
 
   @Override
   public String getFile(String name) {
+    if (reader != null) {
+      CharSequence content = getFileContent(name);
+      return content != null ? content.toString() : null;
+    }
+
     File file = new File(root, name);
 
     try {
@@ -35,6 +52,24 @@ public class FilesystemFolder extends AbstractFolder {
     }
   }
 
+  @Override
+  public CharSequence getFileContent(String name) {
+    if (reader == null) {
+      return getFile(name);
+    }
+
+    File file = new File(root, name);
+    if (!file.isFile()) {
+      return null;
+    }
+
+    try {
+      return reader.read(file.toPath());
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
   @Override
   public Folder getFolder(String name) {
     File folder = new File(root, name);
@@ -42,11 +77,24 @@ public class FilesystemFolder extends AbstractFolder {
       return null;
     }
 
-    return new FilesystemFolder(folder, this, getPath() + name + File.separator, encoding);
+    return new FilesystemFolder(folder, this, getPath() + name + File.separator, encoding, reader);
   }
 
   public static FilesystemFolder create(File root, String encoding) {
+    return create(root, encoding, ReadMode.STREAM);
+  }
+
+  public static FilesystemFolder create(File root, String encoding, ReadMode mode) {
+    return create(root, encoding, mode, NioFileReader.DEFAULT_MAPPING_THRESHOLD);
+  }
+
+  // Files of at least mappingThreshold bytes are mapped in memory when reading through NIO
+  public static FilesystemFolder create(
+      File root, String encoding, ReadMode mode, long mappingThreshold) {
     File absolute = root.getAbsoluteFile();
-    return new FilesystemFolder(absolute, null, absolute.getPath() + File.separator, encoding);
+    NioFileReader reader =
+        mode == ReadMode.NIO ? new NioFileReader(Charset.forName(encoding), mappingThreshold) : null;
+    return new FilesystemFolder(
+        absolute, null, absolute.getPath() + File.separator, encoding, reader);
   }
 }
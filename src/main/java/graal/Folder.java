@@ -12,4 +12,10 @@ public interface Folder {
   public String getFile(String name);
 
   public Folder getFolder(String name);
+
+  // Same as getFile, but implementations may return the content without first copying it into
+  // a String, which matters for large files.
+  public default CharSequence getFileContent(String name) {
+    return getFile(name);
+  }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// A filesystem folder that lists the content of each directory once and answers lookups for
+// missing files and folders from memory, instead of failing to open them one by one. The listing
+// is refreshed when the modification time of the directory changes, which is checked at most
+// once per revalidation interval.
+public class IndexedFilesystemFolder extends AbstractFolder {
+  private static final long DEFAULT_REVALIDATION_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+  private final Path root;
+  private final NioFileReader reader;
+  private final long revalidationInterval;
+  private final Map<String, IndexedFilesystemFolder> folders = new ConcurrentHashMap<>();
+  private volatile Index index;
+
+  private IndexedFilesystemFolder(
+      Path root, Folder parent, String path, NioFileReader reader, long revalidationInterval) {
+    super(parent, path);
+    this.root = root;
+    this.reader = reader;
+    this.revalidationInterval = revalidationInterval;
+  }
+
+  @Override
+  public String getFile(String name) {
+    CharSequence content = getFileContent(name);
+    return content != null ? content.toString() : null;
+  }
+
+  @Override
+  public CharSequence getFileContent(String name) {
+    Index current = getIndex();
+    if (!current.names.contains(name) || current.isDirectory(root, name)) {
+      return null;
+    }
+
+    try {
+      return reader.read(root.resolve(name));
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  @Override
+  public Folder getFolder(String name) {
+    Index current = getIndex();
+    if (!current.names.contains(name) || !current.isDirectory(root, name)) {
+      folders.remove(name);
+      return null;
+    }
+
+    return folders.computeIfAbsent(
+        name,
+        n ->
+            new IndexedFilesystemFolder(
+                root.resolve(n),
+                this,
+                getPath() + n + File.separator,
+                reader,
+                revalidationInterval));
+  }
+
+  private Index getIndex() {
+    Index current = index;
+    long now = System.nanoTime();
+    if (current != null && now - current.checkedAt < revalidationInterval) {
+      return current;
+    }
+
+    synchronized (this) {
+      current = index;
+      if (current != null && now - current.checkedAt < revalidationInterval) {
+        return current;
+      }
+
+      FileTime modified = lastModifiedTime(root);
+      if (current == null || modified == null || !modified.equals(current.modified)) {
+        current = list(root, modified, now);
+      } else {
+        current.checkedAt = now;
+      }
+      index = current;
+      return current;
+    }
+  }
+
+  private static Index list(Path directory, FileTime modified, long now) {
+    Set<String> names = new HashSet<>();
+    if (modified != null) {
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+        for (Path entry : entries) {
+          names.add(entry.getFileName().toString());
+        }
+      } catch (IOException ex) {
+        // The directory went away or can't be read, which is the same as being empty
+        names.clear();
+      }
+    }
+    return new Index(Collections.unmodifiableSet(names), modified, now);
+  }
+
+  private static FileTime lastModifiedTime(Path directory) {
+    try {
+      return Files.getLastModifiedTime(directory);
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  public static IndexedFilesystemFolder create(File root, String encoding) {
+    return create(root, encoding, DEFAULT_REVALIDATION_INTERVAL, TimeUnit.NANOSECONDS);
+  }
+
+  public static IndexedFilesystemFolder create(
+      File root, String encoding, long revalidationInterval, TimeUnit unit) {
+    File absolute = root.getAbsoluteFile();
+    return new IndexedFilesystemFolder(
+        absolute.toPath(),
+        null,
+        absolute.getPath() + File.separator,
+        new NioFileReader(Charset.forName(encoding), NioFileReader.DEFAULT_MAPPING_THRESHOLD),
+        unit.toNanos(revalidationInterval));
+  }
+
+  private static class Index {
+    final Set<String> names;
+    final FileTime modified;
+    // Whether an entry is a directory is only checked when first asked for
+    final Map<String, Boolean> directories = new ConcurrentHashMap<>();
+    volatile long checkedAt;
+
+    Index(Set<String> names, FileTime modified, long checkedAt) {
+      this.names = names;
+      this.modified = modified;
+      this.checkedAt = checkedAt;
+    }
+
+    boolean isDirectory(Path root, String name) {
+      return directories.computeIfAbsent(name, n -> Files.isDirectory(root.resolve(n)));
+    }
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+import org.apache.commons.io.IOUtils;
+
+// A resource folder that scans the directories and jars under its resource path once, when
+// created, and keeps the tree of files and folders in memory. Unlike ResourceFolder, getFolder
+// returns null for folders that don't exist, and streams are only opened for files known to
+// exist, so resolving modules doesn't query the class loader for every candidate.
+//
+// Jars need to contain entries for their directories, which is the case for jars built by the
+// usual tools, for the resource path to be found in them.
+public class IndexedResourceFolder extends AbstractFolder {
+  private ClassLoader loader;
+  private String resourcePath;
+  private String encoding;
+  private Node node;
+
+  @Override
+  public String getFile(String name) {
+    Node child = node.children.get(name);
+    if (child == null || child.isDirectory()) {
+      return null;
+    }
+
+    InputStream stream = loader.getResourceAsStream(resourcePath + "/" + name);
+    if (stream == null) {
+      return null;
+    }
+
+    try (InputStream closing = stream) {
+      return IOUtils.toString(closing, encoding);
+    } catch (IOException ex) {
+      return null;
+    }
+  }
+
+  @Override
+  public Folder getFolder(String name) {
+    Node child = node.children.get(name);
+    if (child == null || !child.isDirectory()) {
+      return null;
+    }
+
+    synchronized (child) {
+      if (child.folder == null) {
+        child.folder =
+            new IndexedResourceFolder(
+                loader, resourcePath + "/" + name, child, this, getPath() + name + "/", encoding);
+      }
+      return child.folder;
+    }
+  }
+
+  private IndexedResourceFolder(
+      ClassLoader loader,
+      String resourcePath,
+      Node node,
+      Folder parent,
+      String displayPath,
+      String encoding) {
+    super(parent, displayPath);
+    this.loader = loader;
+    this.resourcePath = resourcePath;
+    this.node = node;
+    this.encoding = encoding;
+  }
+
+  public static IndexedResourceFolder create(ClassLoader loader, String path, String encoding)
+      throws IOException {
+    Node root = new Node();
+    Enumeration<URL> locations = loader.getResources(path);
+    while (locations.hasMoreElements()) {
+      scan(locations.nextElement(), path, root);
+    }
+    return new IndexedResourceFolder(loader, path, root, null, "/", encoding);
+  }
+
+  private static void scan(URL location, String path, Node root) throws IOException {
+    if ("file".equals(location.getProtocol())) {
+      scanDirectory(location, root);
+    } else if ("jar".equals(location.getProtocol())) {
+      scanJar(location, path, root);
+    }
+  }
+
+  private static void scanDirectory(URL location, Node root) throws IOException {
+    Path directory;
+    try {
+      directory = new File(location.toURI()).toPath();
+    } catch (URISyntaxException ex) {
+      throw new IOException(ex);
+    }
+
+    try (Stream<Path> entries = Files.walk(directory)) {
+      entries.forEach(
+          entry -> {
+            if (!entry.equals(directory)) {
+              Path relative = directory.relativize(entry);
+              root.add(relative.toString().replace('\\', '/'), Files.isDirectory(entry));
+            }
+          });
+    }
+  }
+
+  private static void scanJar(URL location, String path, Node root) throws IOException {
+    URLConnection connection = location.openConnection();
+    if (!(connection instanceof JarURLConnection)) {
+      return;
+    }
+
+    String prefix = path.endsWith("/") ? path : path + "/";
+    JarFile jar = ((JarURLConnection) connection).getJarFile();
+    Enumeration<JarEntry> entries = jar.entries();
+    while (entries.hasMoreElements()) {
+      JarEntry entry = entries.nextElement();
+      String name = entry.getName();
+      if (name.startsWith(prefix) && name.length() > prefix.length()) {
+        root.add(name.substring(prefix.length()), entry.isDirectory());
+      }
+    }
+  }
+
+  private static class Node {
+    // Null for files
+    Map<String, Node> children;
+    IndexedResourceFolder folder;
+
+    boolean isDirectory() {
+      return children != null;
+    }
+
+    Node() {
+      this.children = new HashMap<>();
+    }
+
+    Node(boolean directory) {
+      this.children = directory ? new HashMap<>() : null;
+    }
+
+    void add(String relativePath, boolean directory) {
+      Node current = this;
+      String[] parts = relativePath.split("/");
+      for (int i = 0; i < parts.length; i++) {
+        if (parts[i].isEmpty()) {
+          continue;
+        }
+        boolean last = i == parts.length - 1;
+        Node child = current.children.get(parts[i]);
+        if (child == null) {
+          child = new Node(!last || directory);
+          current.children.put(parts[i], child);
+        } else if (!last && !child.isDirectory()) {
+          // Can't happen on a sane classpath; directories win over files of the same name
+          child.children = new HashMap<>();
+        }
+        current = child;
+      }
+    }
+  }
+}
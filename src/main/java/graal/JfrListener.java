@@ -0,0 +1,283 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// A listener emitting Java Flight Recorder events: one for each module loaded in a context,
+// spanning its compilation and execution, and one for each file or folder looked up while
+// resolving. It needs a JVM with JFR (8u262 or later, or 11), which is also the minimum for
+// building the library (see the enforcer rule in the pom); other classes don't reference it, so
+// older JVMs can still run everything else. When recording is off, or the events are disabled,
+// each callback is a check of whether the event is enabled.
+//
+// Events are built from the listener callbacks of the thread loading the module: the load of a
+// module is attributed the resolution that ran last on its thread, which is the one that found
+// it.
+public class JfrListener implements RequireListener {
+  private static final EventType LOAD_TYPE = EventType.getEventType(ModuleLoadEvent.class);
+  private static final EventType PROBE_TYPE = EventType.getEventType(FolderProbeEvent.class);
+
+  private final ThreadLocal<LoadState> states = ThreadLocal.withInitial(LoadState::new);
+
+  @Override
+  public void resolveStarted(String folderPath, String specifier) {
+    if (LOAD_TYPE.isEnabled()) {
+      states.get().startResolution(specifier, false);
+    }
+  }
+
+  @Override
+  public void resolveEnded(String folderPath, String specifier, String resolvedPath, long nanos) {
+    if (LOAD_TYPE.isEnabled()) {
+      LoadState state = states.get();
+      if (resolvedPath == null) {
+        // Nothing will be loaded
+        state.reset();
+        return;
+      }
+      state.resolvedPath = resolvedPath;
+      state.resolveNanos = nanos;
+    }
+  }
+
+  @Override
+  public void cacheHit(Cache cache, String key) {
+    if (!LOAD_TYPE.isEnabled()) {
+      return;
+    }
+
+    if (cache == Cache.RESOLUTION) {
+      states.get().startResolution(key, true);
+    } else if (cache == Cache.MODULE) {
+      states.get().sourceCached = true;
+    }
+  }
+
+  @Override
+  public void fileProbed(Folder parent, String name, boolean found, int length, long nanos) {
+    if (LOAD_TYPE.isEnabled()) {
+      LoadState state = states.get();
+      state.probes++;
+      if (found) {
+        state.folderType = parent.getClass().getSimpleName();
+      }
+    }
+
+    if (PROBE_TYPE.isEnabled()) {
+      FolderProbeEvent event = new FolderProbeEvent();
+      event.folder = parent.getPath();
+      event.folderType = parent.getClass().getSimpleName();
+      event.name = name;
+      event.directory = false;
+      event.found = found;
+      event.length = length;
+      event.probeDuration = nanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void folderProbed(Folder parent, String name, boolean found, long nanos) {
+    if (LOAD_TYPE.isEnabled()) {
+      states.get().probes++;
+    }
+
+    if (PROBE_TYPE.isEnabled()) {
+      FolderProbeEvent event = new FolderProbeEvent();
+      event.folder = parent.getPath();
+      event.folderType = parent.getClass().getSimpleName();
+      event.name = name;
+      event.directory = true;
+      event.found = found;
+      event.probeDuration = nanos;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void sourceRead(String path, int length, long nanos) {
+    if (LOAD_TYPE.isEnabled()) {
+      states.get().charsRead += length;
+    }
+  }
+
+  @Override
+  public void compileStarted(String path) {
+    if (!LOAD_TYPE.isEnabled()) {
+      return;
+    }
+
+    LoadState state = states.get();
+    ModuleLoadEvent event = new ModuleLoadEvent();
+    event.begin();
+    event.path = path;
+    // The resolution cache doesn't tell which path it resolved to, but nothing else runs on
+    // this thread between its hit and the module being loaded
+    String resolvedPath = state.resolvedPath;
+    if (state.specifier != null && (resolvedPath == null || path.equals(resolvedPath))) {
+      event.specifier = state.specifier;
+      event.folderType = state.folderType;
+      event.charsRead = state.charsRead;
+      event.probes = state.probes;
+      event.resolveDuration = state.resolveNanos;
+      event.resolutionCached = state.resolutionCached;
+      event.sourceCached = state.sourceCached;
+    }
+    state.reset();
+    // A module whose compilation failed is left here, and dropped by the next one
+    state.compiling = event;
+  }
+
+  @Override
+  public void compileEnded(String path, long nanos) {
+    LoadState state = states.get();
+    ModuleLoadEvent event = state.compiling;
+    if (event == null || !event.path.equals(path)) {
+      return;
+    }
+
+    event.compileDuration = nanos;
+    if (path.regionMatches(true, path.length() - 5, ".json", 0, 5)) {
+      state.compiling = null;
+      event.commit();
+    }
+  }
+
+  @Override
+  public void executeStarted(String path) {
+    LoadState state = states.get();
+    ModuleLoadEvent event = state.compiling;
+    if (event != null && event.path.equals(path)) {
+      state.compiling = null;
+      state.executing.push(event);
+    }
+  }
+
+  @Override
+  public void executeEnded(String path, long nanos) {
+    Deque<ModuleLoadEvent> executing = states.get().executing;
+    ModuleLoadEvent event = executing.peek();
+    if (event != null && event.path.equals(path)) {
+      executing.pop();
+      event.executeDuration = nanos;
+      event.commit();
+    }
+  }
+
+  // What happened on a thread since the last resolution, and the loads in progress on it
+  private static class LoadState {
+    String specifier;
+    String resolvedPath;
+    String folderType;
+    boolean resolutionCached;
+    boolean sourceCached;
+    long resolveNanos;
+    long charsRead;
+    int probes;
+
+    ModuleLoadEvent compiling;
+    final Deque<ModuleLoadEvent> executing = new ArrayDeque<>();
+
+    void startResolution(String specifier, boolean cached) {
+      reset();
+      this.specifier = specifier;
+      this.resolutionCached = cached;
+    }
+
+    void reset() {
+      specifier = null;
+      resolvedPath = null;
+      folderType = null;
+      resolutionCached = false;
+      sourceCached = false;
+      resolveNanos = 0;
+      charsRead = 0;
+      probes = 0;
+    }
+  }
+
+  @Name("graal.commonjs.ModuleLoad")
+  @Label("Module Load")
+  @Category({"CommonJS", "Modules"})
+  @Description("A module compiled and run in a context, along with how it was found")
+  @StackTrace(false)
+  static class ModuleLoadEvent extends Event {
+    @Label("Specifier")
+    String specifier;
+
+    @Label("Path")
+    String path;
+
+    @Label("Folder Type")
+    String folderType;
+
+    @Label("Characters Read")
+    @Description("Source read from the folder, in characters; zero when it was cached")
+    long charsRead;
+
+    @Label("Probes")
+    @Description("Files and folders looked up while resolving the module")
+    int probes;
+
+    @Label("Resolve Duration")
+    @Timespan
+    long resolveDuration;
+
+    @Label("Compile Duration")
+    @Timespan
+    long compileDuration;
+
+    @Label("Execute Duration")
+    @Description("Includes the modules it required that weren't loaded yet")
+    @Timespan
+    long executeDuration;
+
+    @Label("Resolution Cached")
+    boolean resolutionCached;
+
+    @Label("Source Cached")
+    boolean sourceCached;
+  }
+
+  @Name("graal.commonjs.FolderProbe")
+  @Label("Folder Probe")
+  @Category({"CommonJS", "Folder I/O"})
+  @Description("A file or folder looked up while resolving a module")
+  @StackTrace(false)
+  static class FolderProbeEvent extends Event {
+    @Label("Folder")
+    String folder;
+
+    @Label("Folder Type")
+    String folderType;
+
+    @Label("Name")
+    String name;
+
+    @Label("Directory")
+    boolean directory;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Length")
+    @Description("Characters read from the file")
+    int length;
+
+    @Label("Probe Duration")
+    @Timespan
+    long probeDuration;
+  }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// A small JSON parser for the files we need to read on the host side, like package.json, without
+// going through a context. Objects become LinkedHashMaps, arrays ArrayLists, and numbers Doubles.
+class JsonParser {
+  private final CharSequence json;
+  private int position;
+
+  private JsonParser(CharSequence json, int position) {
+    this.json = json;
+    this.position = position;
+  }
+
+  // A parser reading the value starting at the given position, for LazyJson
+  static JsonParser at(CharSequence json, int position) {
+    return new JsonParser(json, position);
+  }
+
+  static Object parse(CharSequence json) {
+    JsonParser parser = new JsonParser(json, 0);
+    Object value = parser.readValue();
+    parser.skipWhitespace();
+    if (parser.position < json.length()) {
+      throw parser.error("Unexpected content");
+    }
+    return value;
+  }
+
+  Object readValue() {
+    skipWhitespace();
+    if (position >= json.length()) {
+      throw error("Unexpected end of input");
+    }
+
+    char c = json.charAt(position);
+    switch (c) {
+      case '{':
+        return readObject();
+      case '[':
+        return readArray();
+      case '"':
+        return readString();
+      case 't':
+        return readLiteral("true", Boolean.TRUE);
+      case 'f':
+        return readLiteral("false", Boolean.FALSE);
+      case 'n':
+        return readLiteral("null", null);
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          return readNumber();
+        }
+        throw error("Unexpected character '" + c + "'");
+    }
+  }
+
+  private Map<String, Object> readObject() {
+    Map<String, Object> object = new LinkedHashMap<>();
+    position++;
+    skipWhitespace();
+    if (peek() == '}') {
+      position++;
+      return object;
+    }
+
+    while (true) {
+      skipWhitespace();
+      if (peek() != '"') {
+        throw error("Expected a property name");
+      }
+      String name = readString();
+      skipWhitespace();
+      expect(':');
+      object.put(name, readValue());
+      skipWhitespace();
+      if (peek() == ',') {
+        position++;
+      } else {
+        expect('}');
+        return object;
+      }
+    }
+  }
+
+  private List<Object> readArray() {
+    List<Object> array = new ArrayList<>();
+    position++;
+    skipWhitespace();
+    if (peek() == ']') {
+      position++;
+      return array;
+    }
+
+    while (true) {
+      array.add(readValue());
+      skipWhitespace();
+      if (peek() == ',') {
+        position++;
+      } else {
+        expect(']');
+        return array;
+      }
+    }
+  }
+
+  String readString() {
+    StringBuilder builder = new StringBuilder();
+    position++;
+    while (position < json.length()) {
+      char c = json.charAt(position++);
+      if (c == '"') {
+        return builder.toString();
+      } else if (c == '\\') {
+        builder.append(readEscape());
+      } else if (c < 0x20) {
+        throw error("Control character in string");
+      } else {
+        builder.append(c);
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+  private char readEscape() {
+    if (position >= json.length()) {
+      throw error("Unterminated string");
+    }
+
+    char c = json.charAt(position++);
+    switch (c) {
+      case '"':
+      case '\\':
+      case '/':
+        return c;
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        if (position + 4 > json.length()) {
+          throw error("Invalid unicode escape");
+        }
+        try {
+          char unicode =
+              (char) Integer.parseInt(json.subSequence(position, position + 4).toString(), 16);
+          position += 4;
+          return unicode;
+        } catch (NumberFormatException ex) {
+          throw error("Invalid unicode escape");
+        }
+      default:
+        throw error("Invalid escape '\\" + c + "'");
+    }
+  }
+
+  int position() {
+    return position;
+  }
+
+  // Moves past the next value without building it, but still checks that it is valid JSON, so
+  // that LazyJson rejects the same documents as JSON.parse does
+  void skipValue() {
+    skipWhitespace();
+    if (position >= json.length()) {
+      throw error("Unexpected end of input");
+    }
+
+    char c = json.charAt(position);
+    switch (c) {
+      case '{':
+        skipObject();
+        break;
+      case '[':
+        skipArray();
+        break;
+      case '"':
+        skipString();
+        break;
+      case 't':
+        readLiteral("true", Boolean.TRUE);
+        break;
+      case 'f':
+        readLiteral("false", Boolean.FALSE);
+        break;
+      case 'n':
+        readLiteral("null", null);
+        break;
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          skipNumber();
+          break;
+        }
+        throw error("Unexpected character '" + c + "'");
+    }
+  }
+
+  private void skipObject() {
+    position++;
+    skipWhitespace();
+    if (peek() == '}') {
+      position++;
+      return;
+    }
+
+    while (true) {
+      skipWhitespace();
+      if (peek() != '"') {
+        throw error("Expected a property name");
+      }
+      skipString();
+      skipWhitespace();
+      expect(':');
+      skipValue();
+      skipWhitespace();
+      if (peek() == ',') {
+        position++;
+      } else {
+        expect('}');
+        return;
+      }
+    }
+  }
+
+  private void skipArray() {
+    position++;
+    skipWhitespace();
+    if (peek() == ']') {
+      position++;
+      return;
+    }
+
+    while (true) {
+      skipValue();
+      skipWhitespace();
+      if (peek() == ',') {
+        position++;
+      } else {
+        expect(']');
+        return;
+      }
+    }
+  }
+
+  private void skipString() {
+    position++;
+    while (position < json.length()) {
+      char c = json.charAt(position++);
+      if (c == '"') {
+        return;
+      } else if (c == '\\') {
+        skipEscape();
+      } else if (c < 0x20) {
+        throw error("Control character in string");
+      }
+    }
+    throw error("Unterminated string");
+  }
+
+  private void skipEscape() {
+    char c = peek();
+    if ("\"\\/bfnrt".indexOf(c) >= 0) {
+      position++;
+    } else if (c == 'u') {
+      position++;
+      for (int i = 0; i < 4; i++) {
+        if (Character.digit(peek(), 16) < 0) {
+          throw error("Invalid unicode escape");
+        }
+        position++;
+      }
+    } else {
+      throw error("Invalid escape '\\" + c + "'");
+    }
+  }
+
+  private Double readNumber() {
+    int start = position;
+    skipNumber();
+    return Double.valueOf(json.subSequence(start, position).toString());
+  }
+
+  // Follows the grammar of JSON numbers, which is stricter than Java's (no leading zeros, plus
+  // signs, or missing digits around the dot)
+  private void skipNumber() {
+    if (peek() == '-') {
+      position++;
+    }
+    if (peek() == '0') {
+      position++;
+    } else {
+      skipDigits();
+    }
+
+    if (peek() == '.') {
+      position++;
+      skipDigits();
+    }
+
+    if (peek() == 'e' || peek() == 'E') {
+      position++;
+      if (peek() == '+' || peek() == '-') {
+        position++;
+      }
+      skipDigits();
+    }
+  }
+
+  // At least one digit
+  private void skipDigits() {
+    if (!isDigit(peek())) {
+      throw error("Invalid number");
+    }
+    while (isDigit(peek())) {
+      position++;
+    }
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private Object readLiteral(String literal, Object value) {
+    int end = position + literal.length();
+    if (end > json.length() || !literal.contentEquals(json.subSequence(position, end))) {
+      throw error("Unexpected character '" + json.charAt(position) + "'");
+    }
+    position = end;
+    return value;
+  }
+
+  void expect(char expected) {
+    if (peek() != expected) {
+      throw error("Expected '" + expected + "'");
+    }
+    position++;
+  }
+
+  char peek() {
+    return position < json.length() ? json.charAt(position) : 0;
+  }
+
+  void skipWhitespace() {
+    while (position < json.length()) {
+      char c = json.charAt(position);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        return;
+      }
+      position++;
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " at position " + position);
+  }
+}
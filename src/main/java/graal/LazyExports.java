@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.function.Supplier;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+import org.graalvm.polyglot.proxy.ProxyObject;
+
+// Stands in for the exports of a module that hasn't run yet. The module is loaded the first time
+// anything touches the proxy, which from then on forwards everything to the actual exports.
+// Since methods called on the proxy get it as this, they still see the members of the exports,
+// but this isn't the exports object itself.
+class LazyExports implements ProxyObject, ProxyExecutable {
+  private final Supplier<Value> loader;
+  private Value exports;
+
+  LazyExports(Supplier<Value> loader) {
+    this.loader = loader;
+  }
+
+  private Value exports() {
+    if (exports == null) {
+      exports = loader.get();
+    }
+    return exports;
+  }
+
+  @Override
+  public Object getMember(String key) {
+    return exports().getMember(key);
+  }
+
+  @Override
+  public Object getMemberKeys() {
+    return ProxyArray.fromArray(exports().getMemberKeys().toArray());
+  }
+
+  @Override
+  public boolean hasMember(String key) {
+    return exports().hasMember(key);
+  }
+
+  @Override
+  public void putMember(String key, Value value) {
+    exports().putMember(key, value);
+  }
+
+  @Override
+  public boolean removeMember(String key) {
+    return exports().removeMember(key);
+  }
+
+  // Modules exporting a function can be called through the proxy as well. This is also why
+  // typeof is 'function' for every lazy module: we can't tell what it exports without running it.
+  @Override
+  public Object execute(Value... arguments) {
+    return exports().execute((Object[]) arguments);
+  }
+}
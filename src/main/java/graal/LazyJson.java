@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.graalvm.polyglot.Value;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyObject;
+
+// Exposes a JSON document as proxies that only parse what is read. An object (or array) is
+// indexed the first time it's accessed: we find where each of its members starts, skipping over
+// their content, and members are only parsed when they are read themselves. Memory use is then
+// about the size of the text, plus what the script actually looks at.
+//
+// The proxies aren't real JavaScript objects and arrays, so that things like JSON.stringify or
+// Array.prototype methods may not work on them. Values written to them are kept on the side.
+class LazyJson {
+  private LazyJson() {}
+
+  // Checks that the whole document is valid JSON and returns its root value
+  static Object parse(CharSequence json) {
+    JsonParser parser = JsonParser.at(json, 0);
+    parser.skipValue();
+    parser.skipWhitespace();
+    if (parser.position() < json.length()) {
+      throw new IllegalArgumentException("Unexpected content at position " + parser.position());
+    }
+    return valueAt(json, 0);
+  }
+
+  private static Object valueAt(CharSequence json, int position) {
+    JsonParser parser = JsonParser.at(json, position);
+    parser.skipWhitespace();
+    switch (parser.peek()) {
+      case '{':
+        return new LazyObject(json, parser.position());
+      case '[':
+        return new LazyArray(json, parser.position());
+      default:
+        return parser.readValue();
+    }
+  }
+
+  private static class LazyObject implements ProxyObject {
+    private final CharSequence json;
+    private final int start;
+    // Where each member starts, or -1 for members written by the script
+    private Map<String, Integer> positions;
+    private final Map<String, Object> values = new HashMap<>();
+
+    LazyObject(CharSequence json, int start) {
+      this.json = json;
+      this.start = start;
+    }
+
+    private Map<String, Integer> positions() {
+      if (positions == null) {
+        Map<String, Integer> found = new LinkedHashMap<>();
+        JsonParser parser = JsonParser.at(json, start);
+        parser.expect('{');
+        parser.skipWhitespace();
+        if (parser.peek() == '}') {
+          positions = found;
+          return found;
+        }
+
+        while (true) {
+          parser.skipWhitespace();
+          if (parser.peek() != '"') {
+            throw new IllegalArgumentException(
+                "Expected a property name at position " + parser.position());
+          }
+          String name = parser.readString();
+          parser.skipWhitespace();
+          parser.expect(':');
+          parser.skipWhitespace();
+          found.put(name, parser.position());
+          parser.skipValue();
+          parser.skipWhitespace();
+          if (parser.peek() == ',') {
+            parser.expect(',');
+          } else {
+            parser.expect('}');
+            break;
+          }
+        }
+        positions = found;
+      }
+      return positions;
+    }
+
+    @Override
+    public Object getMember(String key) {
+      if (values.containsKey(key)) {
+        return values.get(key);
+      }
+
+      Integer position = positions().get(key);
+      if (position == null) {
+        return null;
+      }
+
+      Object value = valueAt(json, position);
+      values.put(key, value);
+      return value;
+    }
+
+    @Override
+    public Object getMemberKeys() {
+      return ProxyArray.fromArray(positions().keySet().toArray());
+    }
+
+    @Override
+    public boolean hasMember(String key) {
+      return positions().containsKey(key);
+    }
+
+    @Override
+    public void putMember(String key, Value value) {
+      positions().putIfAbsent(key, -1);
+      values.put(key, value);
+    }
+
+    @Override
+    public boolean removeMember(String key) {
+      values.remove(key);
+      return positions().remove(key) != null;
+    }
+  }
+
+  private static class LazyArray implements ProxyArray {
+    private final CharSequence json;
+    private final int start;
+    // Where each element starts
+    private int[] positions;
+    private Object[] values;
+    private boolean[] parsed;
+
+    LazyArray(CharSequence json, int start) {
+      this.json = json;
+      this.start = start;
+    }
+
+    private void index() {
+      if (positions != null) {
+        return;
+      }
+
+      int[] found = new int[16];
+      int size = 0;
+      JsonParser parser = JsonParser.at(json, start);
+      parser.expect('[');
+      parser.skipWhitespace();
+      if (parser.peek() != ']') {
+        while (true) {
+          parser.skipWhitespace();
+          if (size == found.length) {
+            found = Arrays.copyOf(found, size * 2);
+          }
+          found[size++] = parser.position();
+          parser.skipValue();
+          parser.skipWhitespace();
+          if (parser.peek() == ',') {
+            parser.expect(',');
+          } else {
+            break;
+          }
+        }
+      }
+      parser.expect(']');
+
+      positions = Arrays.copyOf(found, size);
+      values = new Object[size];
+      parsed = new boolean[size];
+    }
+
+    @Override
+    public Object get(long index) {
+      index();
+      int i = checkIndex(index);
+      if (!parsed[i]) {
+        values[i] = valueAt(json, positions[i]);
+        parsed[i] = true;
+      }
+      return values[i];
+    }
+
+    @Override
+    public void set(long index, Value value) {
+      index();
+      int i = checkIndex(index);
+      values[i] = value;
+      parsed[i] = true;
+    }
+
+    @Override
+    public long getSize() {
+      index();
+      return positions.length;
+    }
+
+    private int checkIndex(long index) {
+      if (index < 0 || index >= positions.length) {
+        throw new ArrayIndexOutOfBoundsException((int) index);
+      }
+      return (int) index;
+    }
+  }
+}
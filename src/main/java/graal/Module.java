@@ -4,11 +4,21 @@
 
 package graal;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.HostAccess;
 import org.graalvm.polyglot.PolyglotException;
@@ -18,17 +28,56 @@ import org.graalvm.polyglot.proxy.ProxyArray;
 public class Module implements RequireFunction {
   private Context context;
   private Value jsonConstructor;
+  private Value guestRequireFactory;
 
   private Folder folder;
   private ModuleCache cache;
-
+  private RequireOptions options;
+  private PackageJsonCache packageJsonCache;
+  private SourceCache sourceCache;
+  private RequireListener listener;
+  private boolean timed;
+  // Modules loaded in this context, by effective path. Shared by the whole module tree.
+  private Map<String, Module> loadedModules;
+  // Paths of modules that changed since they were loaded. Other threads (like a ModuleWatcher)
+  // add to it, but modules are only unloaded by the thread using the context.
+  private Queue<String> changedModules;
+  private AsyncRequires asyncRequires;
+
+  private String id;
   private Module mainModule;
   @HostAccess.Export public Value main;
   private Value module;
   private List<Value> children = new ArrayList<>();
+  private Set<Module> childModules = new LinkedHashSet<>();
   private Value exports;
   private static ThreadLocal<Map<String, Value>> refCache = new ThreadLocal<>();
 
+  // Builds a require function which only calls into the host the first time a specifier is
+  // required, or while the module it resolves to is still loading. Once a module is loaded,
+  // requiring it again stays in JavaScript.
+  private static final String GUEST_REQUIRE =
+      "(function(host) {\n"
+          + "  var memo = Object.create(null);\n"
+          + "  var require = function require(id) {\n"
+          + "    var m = memo[id];\n"
+          + "    if (m === undefined) {\n"
+          + "      m = host.requireModule(id);\n"
+          + "      if (m === null) {\n"
+          + "        return host.require(id);\n"
+          + "      }\n"
+          + "      if (m.loaded) {\n"
+          + "        memo[id] = m;\n"
+          + "      }\n"
+          + "    }\n"
+          + "    return m.exports;\n"
+          + "  };\n"
+          + "  require.lazy = function lazy(id) { return host.lazy(id); };\n"
+          + "  require.async = function async(id) { return host.async(id); };\n"
+          + "  require.main = host.main;\n"
+          + "  return require;\n"
+          + "})";
+
   public Module(
       Context context,
       Folder folder,
@@ -39,15 +88,57 @@ public class Module implements RequireFunction {
       Module parent,
       Module root)
       throws PolyglotException {
+    this(context, folder, cache, filename, module, exports, parent, root, RequireOptions.create());
+  }
+
+  public Module(
+      Context context,
+      Folder folder,
+      ModuleCache cache,
+      String filename,
+      Value module,
+      Value exports,
+      Module parent,
+      Module root,
+      RequireOptions options)
+      throws PolyglotException {
 
     this.context = context;
 
     if (parent != null) {
       this.jsonConstructor = parent.jsonConstructor;
+      this.guestRequireFactory = parent.guestRequireFactory;
+      this.options = parent.options;
+      this.packageJsonCache = parent.packageJsonCache;
+      this.sourceCache = parent.sourceCache;
+      this.loadedModules = parent.loadedModules;
+      this.changedModules = parent.changedModules;
+      this.asyncRequires = parent.asyncRequires;
     } else {
       this.jsonConstructor = context.eval("js", "JSON");
+      // Modules can be unloaded by a watcher behind the back of the memo, so we don't use it then
+      if (options.isGuestRequireMemo() && options.getWatcher() == null) {
+        this.guestRequireFactory = context.eval("js", GUEST_REQUIRE);
+      }
+      this.options = options;
+      this.packageJsonCache =
+          options.getPackageJsonCache() != null
+              ? options.getPackageJsonCache()
+              : new PackageJsonCache();
+      // Module sources are cached per engine, so that contexts built on a shared engine reuse
+      // the code parsed for the others
+      this.sourceCache =
+          options.getSourceCache() != null
+              ? options.getSourceCache()
+              : SourceCache.forEngine(context.getEngine());
+      this.loadedModules = new ConcurrentHashMap<>();
+      this.changedModules = new ConcurrentLinkedQueue<>();
+      this.asyncRequires = new AsyncRequires(options.getAsyncExecutor());
     }
 
+    this.listener = this.options.getListener();
+    this.timed = listener != RequireListener.NOOP || this.options.getRecorder() != null;
+    this.id = filename;
     this.folder = folder;
     this.cache = cache;
     this.mainModule = root != null ? root : this;
@@ -71,34 +162,260 @@ public class Module implements RequireFunction {
   @Override
   @HostAccess.Export
   public Value require(String module) throws PolyglotException {
+    Predicate<String> lazyRequires = options.getLazyRequires();
+    if (module != null && lazyRequires != null && lazyRequires.test(module)) {
+      return lazy(module);
+    }
+    return load(module, false);
+  }
+
+  // Like require, but only resolves the module: it runs the first time its exports are used,
+  // through the proxy returned in their place. Modules that are already loaded are returned as
+  // they are.
+  @HostAccess.Export
+  public Value lazy(String module) throws PolyglotException {
     if (module == null) {
       throwModuleNotFoundException("<null>");
     }
 
-    String[] parts = Paths.splitPath(module);
-    if (parts.length == 0) {
-      throwModuleNotFoundException(module);
+    ResolutionCache resolutions = options.getResolutionCache();
+    String resolvedPath = resolutions != null ? resolutions.get(folder.getPath(), module) : null;
+    if (resolvedPath == null) {
+      ModuleSource found = resolve(folder, module);
+      if (found == null) {
+        throwModuleNotFoundException(module);
+      }
+      assert found != null;
+      resolvedPath = found.getPath();
     }
 
-    String[] folderParts = Arrays.copyOfRange(parts, 0, parts.length - 1);
+    Module loaded = loadedModules.get(resolvedPath);
+    if (loaded != null) {
+      addChild(loaded);
+      return loaded.exports;
+    }
 
-    String filename = parts[parts.length - 1];
+    return context.asValue(new LazyExports(() -> load(module, false)));
+  }
+
+  // Like require, but returns a promise of the exports. The module is resolved and read on the
+  // executor of RequireOptions.withAsyncExecutor; it then runs, and the promise is settled, the
+  // next time the thread using the context calls runPendingRequires (or awaitPendingRequires).
+  // Modules already loaded settle the promise right away.
+  @HostAccess.Export
+  public Value async(String module) throws PolyglotException {
+    return asyncRequires.newPromise(
+        context,
+        arguments -> {
+          requireAsync(module, arguments[0], arguments[1]);
+          return null;
+        });
+  }
+
+  private void requireAsync(String module, Value resolve, Value reject) {
+    if (module == null) {
+      settle(() -> load(null, false), resolve, reject);
+      return;
+    }
+
+    if (!changedModules.isEmpty()) {
+      unloadChangedModules();
+    }
+
+    // Modules already loaded don't need the executor: the promise is settled right away
+    String folderPath = folder.getPath();
+    ResolutionCache resolutions = getAsyncResolutions();
+    String resolvedPath = resolutions != null ? resolutions.get(folderPath, module) : null;
+    Module loaded = resolvedPath != null ? loadedModules.get(resolvedPath) : null;
+    if (loaded != null) {
+      listener.cacheHit(RequireListener.Cache.LOADED, resolvedPath);
+      if (options.getRecorder() != null) {
+        options.getRecorder().recordResolution(folderPath, module, loaded.id, requirer(), 0);
+      }
+      addChild(loaded);
+      resolve.execute(loaded.exports);
+      return;
+    }
+
+    AsyncResolution resolution = new AsyncResolution(module);
+    asyncRequires.submit(
+        () -> {
+          resolution.run();
+          if (resolution.source != null && resolutions != null) {
+            resolutions.put(folderPath, module, resolution.source.getPath());
+          }
+        },
+        () -> settle(() -> loadResolved(resolution).exports, resolve, reject));
+  }
+
+  // Where require.async remembers what specifiers resolved to: the resolution cache of the
+  // options, or else one of its own. Its own isn't told about changes by a watcher, so we go
+  // without when there is one.
+  private ResolutionCache getAsyncResolutions() {
+    if (options.getResolutionCache() != null) {
+      return options.getResolutionCache();
+    }
+    return options.getWatcher() == null ? asyncRequires.getResolutions() : null;
+  }
+
+  private void settle(Supplier<Value> load, Value resolve, Value reject) {
+    Value exports;
+    try {
+      exports = load.get();
+    } catch (RuntimeException ex) {
+      reject.execute(asyncRequires.toError(context, ex));
+      return;
+    }
+    resolve.execute(exports);
+  }
+
+  // Loads the module the background step of require.async resolved, without going through the
+  // resolution rules again
+  private Module loadResolved(AsyncResolution resolution) throws PolyglotException {
+    if (!resolution.done) {
+      // The executor turned the task down, so the module is resolved on this thread
+      resolution.run();
+    }
+    if (resolution.error != null) {
+      throw resolution.error;
+    }
+
+    ModuleSource found = resolution.source;
+    if (found == null) {
+      throwModuleNotFoundException(resolution.module);
+    }
+
+    assert found != null;
+    if (!changedModules.isEmpty()) {
+      unloadChangedModules();
+    }
+    if (refCache.get() == null) {
+      refCache.set(new HashMap<>());
+    }
+    if (options.getRecorder() != null) {
+      options
+          .getRecorder()
+          .recordResolution(
+              folder.getPath(), resolution.module, found.getPath(), requirer(), resolution.nanos);
+    }
+
+    // The module cache gives us the latest source if the module changed since it was read. The
+    // source read in the background only serves when it can't be found from its path again.
+    Module loaded = getResolvedModule(found.getPath());
+    if (loaded == null) {
+      loaded = getOrCompileModule(found);
+    }
+    addChild(loaded);
+    return loaded;
+  }
+
+  // The background step of a require.async: what the specifier resolved to, or how it failed.
+  // It's written by the executor and read by the thread of the context once the completion is
+  // queued.
+  private class AsyncResolution {
+    private final String module;
+    private ModuleSource source;
+    private RuntimeException error;
+    private long nanos;
+    private boolean done;
+
+    AsyncResolution(String module) {
+      this.module = module;
+    }
+
+    void run() {
+      long start = options.getRecorder() != null ? System.nanoTime() : 0;
+      try {
+        source = resolve(folder, module);
+      } catch (RuntimeException ex) {
+        error = ex;
+      }
+      nanos = options.getRecorder() != null ? System.nanoTime() - start : 0;
+      done = true;
+    }
+  }
 
-    Module found = null;
+  // Runs the modules required with require.async whose sources were read since the last call,
+  // and settles their promises. It has to be called by the thread using the context, for
+  // instance between the events of an event loop. Returns how many requires were completed.
+  public int runPendingRequires() {
+    return asyncRequires.runCompletions();
+  }
+
+  // Same as runPendingRequires, but waits for the requires still reading. Returns false if some
+  // were still pending after the timeout.
+  public boolean awaitPendingRequires(long timeout, TimeUnit unit) throws InterruptedException {
+    return asyncRequires.await(timeout, unit);
+  }
+
+  // Requires made with require.async that weren't completed yet
+  public int getPendingRequireCount() {
+    return asyncRequires.getOutstanding();
+  }
 
-    Folder resolvedFolder = resolveFolder(folder, folderParts);
+  // Used by the guest require function (see RequireOptions.withGuestRequireMemo): returns the
+  // module object rather than its exports, so that the function can tell when the module is
+  // done loading, and read its exports even if they get replaced. Returns null for lazy
+  // specifiers, which have to go through require every time.
+  @HostAccess.Export
+  public Value requireModule(String module) throws PolyglotException {
+    Predicate<String> lazyRequires = options.getLazyRequires();
+    if (module != null && lazyRequires != null && lazyRequires.test(module)) {
+      return null;
+    }
+    return load(module, true);
+  }
 
-    // Let's make sure each thread gets its own refCache
+  private Value load(String module, boolean wantModule) throws PolyglotException {
+    if (module == null) {
+      throwModuleNotFoundException("<null>");
+    }
+
+    // Let's make sure each thread gets its own refCache, before anything can compile a module
     if (refCache.get() == null) {
       refCache.set(new HashMap<>());
     }
 
+    if (!changedModules.isEmpty()) {
+      unloadChangedModules();
+    }
+
+    // When we have already seen this specifier from this folder, we know which module it resolves
+    // to without having to parse it or walk any folder.
+    ResolutionCache resolutions = options.getResolutionCache();
+    String folderPath = resolutions != null ? folder.getPath() : null;
+    if (folderPath != null) {
+      String resolvedPath = resolutions.get(folderPath, module);
+      if (resolvedPath != null) {
+        listener.cacheHit(RequireListener.Cache.RESOLUTION, module);
+      } else {
+        listener.cacheMiss(RequireListener.Cache.RESOLUTION, module);
+      }
+
+      Module found = getResolvedModule(resolvedPath);
+      if (found != null) {
+        if (options.getRecorder() != null) {
+          options.getRecorder().recordResolution(folderPath, module, found.id, requirer(), 0);
+        }
+        addChild(found);
+        return wantModule ? found.module : found.exports;
+      }
+    }
+
+    ModulePath path = ModulePath.parse(module);
+    if (path == null) {
+      throwModuleNotFoundException(module);
+    }
+
+    assert path != null;
+    Folder resolvedFolder = resolveFolder(folder, path);
+
     String requestedFullPath = null;
     if (resolvedFolder != null) {
-      requestedFullPath = resolvedFolder.getPath() + filename;
+      requestedFullPath = cache.key(resolvedFolder.getPath(), path.getName());
       Value cachedExports = refCache.get().get(requestedFullPath);
       if (cachedExports != null) {
-        return cachedExports;
+        return wantModule ? loadingModule(cachedExports) : cachedExports;
       } else {
         // We must store a reference to currently loading module to avoid circular requires
         refCache.get().put(requestedFullPath, newObject());
@@ -106,43 +423,237 @@ public class Module implements RequireFunction {
     }
 
     try {
-      // If not cached, we try to resolve the module from the current folder, ignoring node_modules
+      ModuleRecorder recorder = options.getRecorder();
+      long start = recorder != null ? System.nanoTime() : 0;
+      ModuleSource found = resolve(folder, module, resolvedFolder, path);
+      if (found == null) {
+        throwModuleNotFoundException(module);
+      }
+
+      assert found != null;
+      if (recorder != null) {
+        recorder.recordResolution(
+            folder.getPath(), module, found.getPath(), requirer(), System.nanoTime() - start);
+      }
+
+      Module loaded = getOrCompileModule(found);
+      addChild(loaded);
+
+      if (folderPath != null) {
+        resolutions.put(folderPath, module, found.getPath());
+      }
+
+      return wantModule ? loaded.module : loaded.exports;
+
+    } finally {
+      // Finally, we remove the successful resolved module from the refCache
+      if (requestedFullPath != null) {
+        refCache.get().remove(requestedFullPath);
+      }
+    }
+  }
+
+  // Drops the refCache of the calling thread. Tests use it to start from a thread that never
+  // required anything, whatever ran on it before.
+  static void resetThreadState() {
+    refCache.remove();
+  }
+
+  // The path of this module for the recorder, or null for the module given to the host
+  private String requirer() {
+    return this == mainModule ? null : id;
+  }
+
+  // Finds the source of the module the specifier refers to from the given folder, like require
+  // does, but without loading it. Returns null when there is no such module.
+  ModuleSource resolve(Folder from, String module) throws PolyglotException {
+    ModulePath path = ModulePath.parse(module);
+    if (path == null) {
+      return null;
+    }
+    return resolve(from, module, resolveFolder(from, path), path);
+  }
+
+  private ModuleSource resolve(Folder from, String module, Folder resolvedFolder, ModulePath path)
+      throws PolyglotException {
+    ModuleSource found = null;
+    long start = now();
+    listener.resolveStarted(from.getPath(), module);
+    try {
+      // If not cached, we try to resolve the module from the current folder, ignoring
+      // node_modules
       if (isPrefixedModuleName(module)) {
-        found = attemptToLoadFromThisFolder(resolvedFolder, filename);
+        found = attemptToLoadFromThisFolder(resolvedFolder, path.getName());
       }
 
       // Then, if not successful, we'll look at node_modules in the current folder and then
       // in all parent folders until we reach the top.
       if (found == null) {
-        found = searchForModuleInNodeModules(folder, folderParts, filename);
+        found = searchForModuleInNodeModules(from, path);
       }
 
-      if (found == null) {
-        throwModuleNotFoundException(module);
+      return found;
+    } finally {
+      listener.resolveEnded(
+          from.getPath(), module, found != null ? found.getPath() : null, since(start));
+    }
+  }
+
+  Folder getFolder() {
+    return folder;
+  }
+
+  RequireOptions getOptions() {
+    return options;
+  }
+
+  PackageJsonCache getPackageJsonCache() {
+    return packageJsonCache;
+  }
+
+  // Stands for a module required while it's being loaded (in a circular require)
+  private Value loadingModule(Value exports) throws PolyglotException {
+    Value loading = newObject();
+    loading.putMember("exports", exports);
+    loading.putMember("loaded", false);
+    return loading;
+  }
+
+  // The require function given to a module: the module itself, or a guest function memoizing
+  // what it returns
+  Object getRequireFunction() throws PolyglotException {
+    if (guestRequireFactory == null) {
+      return this;
+    }
+    return guestRequireFactory.execute(this);
+  }
+
+  private Module getResolvedModule(String resolvedPath) throws PolyglotException {
+    if (resolvedPath == null) {
+      return null;
+    }
+
+    Module found = loadedModules.get(resolvedPath);
+    if (found != null) {
+      listener.cacheHit(RequireListener.Cache.LOADED, resolvedPath);
+      return found;
+    }
+    listener.cacheMiss(RequireListener.Cache.LOADED, resolvedPath);
+
+    // Not loaded in this context yet, but the source may have been read by another one. If not,
+    // we read it straight from its path rather than going through the resolution rules again.
+    ModuleSource source = cache.get(resolvedPath);
+    if (source != null) {
+      listener.cacheHit(RequireListener.Cache.MODULE, resolvedPath);
+    } else {
+      listener.cacheMiss(RequireListener.Cache.MODULE, resolvedPath);
+      source = loadResolvedSource(resolvedPath);
+    }
+    return source != null ? getOrCompileModule(source) : null;
+  }
+
+  ModuleSource loadResolvedSource(String resolvedPath) throws PolyglotException {
+    Folder root = mainModule.folder;
+    String rootPath = root.getPath();
+    if (rootPath == null || !resolvedPath.startsWith(rootPath)) {
+      return null;
+    }
+
+    String[] parts = Paths.splitPath(resolvedPath.substring(rootPath.length()));
+    for (String part : parts) {
+      if (part.isEmpty()) {
+        return null;
       }
+    }
 
-      assert found != null;
-      children.add(found.module);
+    Folder parent = resolveFolder(root, parts, parts.length - 1);
+    if (parent == null) {
+      return null;
+    }
 
-      return found.exports;
+    String filename = parts[parts.length - 1];
+    return cache.load(
+        resolvedPath,
+        () -> {
+          long start = now();
+          String code = getFile(parent, filename);
+          ModuleSource source =
+              code != null ? createModuleSource(parent, resolvedPath, code) : null;
+          if (source != null) {
+            listener.sourceRead(resolvedPath, code.length(), since(start));
+          }
+          return source;
+        });
+  }
 
-    } finally {
-      // Finally, we remove the successful resolved module from the refCache
-      if (requestedFullPath != null) {
-        refCache.get().remove(requestedFullPath);
+  private void addChild(Module child) {
+    if (childModules.add(child)) {
+      children.add(child.module);
+    }
+  }
+
+  // Marks the module loaded from the path as changed. It will be unloaded, along with all the
+  // modules that depend on it, the next time require is called in this context.
+  void moduleChanged(String fullPath) {
+    changedModules.add(fullPath);
+  }
+
+  void allModulesChanged() {
+    changedModules.addAll(loadedModules.keySet());
+  }
+
+  private void unloadChangedModules() {
+    Set<Module> unloaded = new HashSet<>();
+    Deque<Module> pending = new ArrayDeque<>();
+    String fullPath;
+    while ((fullPath = changedModules.poll()) != null) {
+      Module changed = loadedModules.get(fullPath);
+      if (changed != null) {
+        pending.add(changed);
+      }
+    }
+
+    // Modules that required a changed module, directly or not, hold on to its old exports so
+    // they have to be loaded again as well.
+    while (!pending.isEmpty()) {
+      Module current = pending.poll();
+      if (!unloaded.add(current)) {
+        continue;
+      }
+
+      loadedModules.remove(current.id, current);
+      for (Module candidate : loadedModules.values()) {
+        if (candidate.childModules.contains(current)) {
+          pending.add(candidate);
+        }
+      }
+    }
+
+    if (unloaded.isEmpty()) {
+      return;
+    }
+
+    List<Module> remaining = new ArrayList<>(loadedModules.values());
+    remaining.add(mainModule);
+    for (Module candidate : remaining) {
+      if (candidate.childModules.removeAll(unloaded)) {
+        candidate.children.clear();
+        for (Module child : candidate.childModules) {
+          candidate.children.add(child.module);
+        }
       }
     }
   }
 
-  private Module searchForModuleInNodeModules(
-      Folder resolvedFolder, String[] folderParts, String filename) throws PolyglotException {
+  private ModuleSource searchForModuleInNodeModules(Folder resolvedFolder, ModulePath path)
+      throws PolyglotException {
     Folder current = resolvedFolder;
     while (current != null) {
-      Folder nodeModules = current.getFolder("node_modules");
+      Folder nodeModules = getFolder(current, "node_modules");
 
       if (nodeModules != null) {
-        Module found =
-            attemptToLoadFromThisFolder(resolveFolder(nodeModules, folderParts), filename);
+        ModuleSource found =
+            attemptToLoadFromThisFolder(resolveFolder(nodeModules, path), path.getName());
         if (found != null) {
           return found;
         }
@@ -154,60 +665,54 @@ public class Module implements RequireFunction {
     return null;
   }
 
-  private Module attemptToLoadFromThisFolder(Folder resolvedFolder, String filename)
+  private ModuleSource attemptToLoadFromThisFolder(Folder resolvedFolder, String filename)
       throws PolyglotException {
 
     if (resolvedFolder == null) {
       return null;
     }
 
-    String requestedFullPath = resolvedFolder.getPath() + filename;
-
-    Module found = cache.get(requestedFullPath);
-    if (found != null) {
-      return found;
-    }
-
-    // First we try to load as a file, trying out various variations on the path
-    found = loadModuleAsFile(resolvedFolder, filename);
-
-    // Then we try to load as a directory
-    if (found == null) {
-      found = loadModuleAsFolder(resolvedFolder, filename);
+    String requestedFullPath = cache.key(resolvedFolder.getPath(), filename);
+    ModuleSource cached = cache.getIfPresent(requestedFullPath);
+    if (cached != null) {
+      listener.cacheHit(RequireListener.Cache.MODULE, requestedFullPath);
+      return cached;
     }
 
-    if (found != null) {
-      // We keep a cache entry for the requested path even though the code that
-      // compiles the module also adds it to the cache with the potentially different
-      // effective path. This avoids having to load package.json every time, etc.
-      cache.put(requestedFullPath, found);
+    // The cache makes sure that only one thread at a time resolves and reads a given path
+    SourceLoader loader = new SourceLoader(resolvedFolder, filename);
+    ModuleSource found = cache.load(requestedFullPath, loader);
+    if (loader.called) {
+      listener.cacheMiss(RequireListener.Cache.MODULE, requestedFullPath);
+    } else {
+      listener.cacheHit(RequireListener.Cache.MODULE, requestedFullPath);
     }
-
     return found;
   }
 
-  private Module loadModuleAsFile(Folder parent, String filename) throws PolyglotException {
+  private ModuleSource loadModuleAsFile(Folder parent, String filename)
+      throws PolyglotException {
 
     String[] filenamesToAttempt = getFilenamesToAttempt(filename);
     for (String tentativeFilename : filenamesToAttempt) {
 
-      String code = parent.getFile(tentativeFilename);
+      String code = getFile(parent, tentativeFilename);
       if (code != null) {
         String fullPath = parent.getPath() + tentativeFilename;
-        return compileModuleAndPutInCache(parent, fullPath, code);
+        return createModuleSource(parent, fullPath, code);
       }
     }
 
     return null;
   }
 
-  private Module loadModuleAsFolder(Folder parent, String name) throws PolyglotException {
-    Folder fileAsFolder = parent.getFolder(name);
+  private ModuleSource loadModuleAsFolder(Folder parent, String name) throws PolyglotException {
+    Folder fileAsFolder = getFolder(parent, name);
     if (fileAsFolder == null) {
       return null;
     }
 
-    Module found = loadModuleThroughPackageJson(fileAsFolder);
+    ModuleSource found = loadModuleThroughPackageJson(fileAsFolder);
 
     if (found == null) {
       found = loadModuleThroughIndexJs(fileAsFolder);
@@ -220,29 +725,27 @@ public class Module implements RequireFunction {
     return found;
   }
 
-  private Module loadModuleThroughPackageJson(Folder parent) throws PolyglotException {
-    String packageJson = parent.getFile("package.json");
-    if (packageJson == null) {
+  private ModuleSource loadModuleThroughPackageJson(Folder parent) throws PolyglotException {
+    PackageJson packageJson = packageJsonCache.get(parent.getPath(), () -> readPackageJson(parent));
+    String mainFile = packageJson.getMain();
+    if (mainFile == null) {
       return null;
     }
 
-    String mainFile = getMainFileFromPackageJson(packageJson);
-    if (mainFile == null) {
+    ModulePath path = ModulePath.parse(mainFile);
+    if (path == null) {
       return null;
     }
 
-    String[] parts = Paths.splitPath(mainFile);
-    String[] folders = Arrays.copyOfRange(parts, 0, parts.length - 1);
-    String filename = parts[parts.length - 1];
-    Folder folder = resolveFolder(parent, folders);
+    Folder folder = resolveFolder(parent, path);
     if (folder == null) {
       return null;
     }
 
-    Module module = loadModuleAsFile(folder, filename);
+    ModuleSource module = loadModuleAsFile(folder, path.getName());
 
     if (module == null) {
-      folder = resolveFolder(parent, parts);
+      folder = resolveFolder(parent, path.getParts(), path.getParts().length);
       if (folder != null) {
         module = loadModuleThroughIndexJs(folder);
       }
@@ -251,54 +754,69 @@ public class Module implements RequireFunction {
     return module;
   }
 
-  private String getMainFileFromPackageJson(String packageJson) throws PolyglotException {
-    Value parsed = parseJson(packageJson);
-    Value main = parsed.getMember("main");
-    return main == null ? null : main.asString();
+  // This is parsed on the host rather than with the JSON object of the context, so that modules
+  // can be resolved from any thread (see Require.preload).
+  private PackageJson readPackageJson(Folder parent) {
+    String packageJson = getFile(parent, "package.json");
+    if (packageJson == null) {
+      return PackageJson.MISSING;
+    }
+
+    try {
+      return PackageJson.parse(packageJson);
+    } catch (IllegalArgumentException ex) {
+      throw new GraalGuestException(
+          "Invalid package.json in " + parent.getPath() + ": " + ex.getMessage());
+    }
   }
 
-  private Module loadModuleThroughIndexJs(Folder parent) throws PolyglotException {
-    String code = parent.getFile("index.js");
+  private ModuleSource loadModuleThroughIndexJs(Folder parent) throws PolyglotException {
+    String code = getFile(parent, "index.js");
     if (code == null) {
       return null;
     }
 
-    return compileModuleAndPutInCache(parent, parent.getPath() + "index.js", code);
+    return createModuleSource(parent, parent.getPath() + "index.js", code);
   }
 
-  private Module loadModuleThroughIndexJson(Folder parent) throws PolyglotException {
-    String code = parent.getFile("index.json");
+  private ModuleSource loadModuleThroughIndexJson(Folder parent) throws PolyglotException {
+    String code = getFile(parent, "index.json");
     if (code == null) {
       return null;
     }
 
-    return compileModuleAndPutInCache(parent, parent.getPath() + "index.json", code);
+    return createModuleSource(parent, parent.getPath() + "index.json", code);
   }
 
-  private Module compileModuleAndPutInCache(Folder parent, String fullPath, String code)
-      throws PolyglotException {
-
-    Module created;
+  private static ModuleSource createModuleSource(Folder parent, String fullPath, String code) {
     String lowercaseFullPath = fullPath.toLowerCase();
-    if (lowercaseFullPath.endsWith(".js")) {
-      created = compileJavaScriptModule(parent, fullPath, code);
-    } else if (lowercaseFullPath.endsWith(".json")) {
-      created = compileJsonModule(parent, fullPath, code);
-    } else {
+    if (!lowercaseFullPath.endsWith(".js") && !lowercaseFullPath.endsWith(".json")) {
       // Unsupported module type
       return null;
     }
 
-    // We keep a cache entry for the compiled module using it's effective path, to avoid
-    // recompiling even if module is requested through a different initial path.
-    cache.put(fullPath, created);
-
-    return created;
+    return new ModuleSource(parent, fullPath, code);
   }
 
-  private Module compileJavaScriptModule(Folder parent, String fullPath, String code)
-      throws PolyglotException {
+  private Module getOrCompileModule(ModuleSource source) throws PolyglotException {
+    // Sources may be shared with other contexts, but the compiled module and its exports belong
+    // to this one. We keep them by effective path, to avoid recompiling even if the module is
+    // requested through a different initial path.
+    Module found = loadedModules.get(source.getPath());
+    if (found != null) {
+      listener.cacheHit(RequireListener.Cache.LOADED, source.getPath());
+      return found;
+    }
+    listener.cacheMiss(RequireListener.Cache.LOADED, source.getPath());
 
+    if (source.isJson()) {
+      return compileJsonModule(source);
+    }
+    return compileJavaScriptModule(source);
+  }
+
+  private Module compileJavaScriptModule(ModuleSource source) throws PolyglotException {
+    String fullPath = source.getPath();
     Value module = newObject();
 
     // If we have cached bindings, use them to rebind exports instead of creating new ones
@@ -308,20 +826,53 @@ public class Module implements RequireFunction {
     }
 
     Module created =
-        new Module(context, parent, cache, fullPath, module, exports, this, this.mainModule);
+        new Module(
+            context, source.getFolder(), cache, fullPath, module, exports, this, this.mainModule);
 
-    String[] split = Paths.splitPath(fullPath);
-    String filename = split[split.length - 1];
-    String dirname = fullPath.substring(0, Math.max(fullPath.length() - filename.length() - 1, 0));
+    int separator = Math.max(fullPath.lastIndexOf('/'), fullPath.lastIndexOf('\\'));
+    String filename = fullPath.substring(separator + 1);
+    String dirname = fullPath.substring(0, Math.max(separator, 0));
 
-    // This mimics how Node wraps module in a function. I used to pass a 2nd parameter
-    // to eval to override global context, but it caused problems Object.create.
-    //
-    // The \n at the end is to take care of files ending with a comment
-    Value function =
-        context.eval(
-            "js", "(function (exports, require, module, __filename, __dirname) {" + code + "\n})");
-    function.execute(created.exports, created, created.module, filename, dirname);
+    // Like Node, we register the module before running it so that circular requires get the
+    // exports as they are at that point instead of loading the module a second time.
+    loadedModules.put(fullPath, created);
+
+    if (options.getPrefetcher() != null) {
+      options.getPrefetcher().prefetch(created, source);
+    }
+
+    try {
+      long start = now();
+      Value function;
+      listener.compileStarted(fullPath);
+      try {
+        function = context.eval(source.getSource(sourceCache));
+      } catch (RuntimeException ex) {
+        listener.loadFailed(fullPath, ex);
+        throw ex;
+      } finally {
+        listener.compileEnded(fullPath, since(start));
+      }
+
+      long compiled = now();
+      listener.executeStarted(fullPath);
+      try {
+        function.execute(
+            created.exports, created.getRequireFunction(), created.module, filename, dirname);
+      } catch (RuntimeException ex) {
+        listener.loadFailed(fullPath, ex);
+        throw ex;
+      } finally {
+        listener.executeEnded(fullPath, since(compiled));
+      }
+
+      if (options.getRecorder() != null) {
+        options.getRecorder().recordLoad(fullPath, compiled - start, since(compiled));
+      }
+    } catch (RuntimeException ex) {
+      loadedModules.remove(fullPath, created);
+      throw ex;
+    }
 
     // Scripts are free to replace the global exports symbol with their own, so we
     // reload it from the module object after compiling the code.
@@ -331,14 +882,45 @@ public class Module implements RequireFunction {
     return created;
   }
 
-  private Module compileJsonModule(Folder parent, String fullPath, String code)
-      throws PolyglotException {
+  private Module compileJsonModule(ModuleSource source) throws PolyglotException {
     Value module = newObject();
     Value exports = newObject();
     Module created =
-        new Module(context, parent, cache, fullPath, module, exports, this, this.mainModule);
-    created.exports = parseJson(code);
+        new Module(
+            context,
+            source.getFolder(),
+            cache,
+            source.getPath(),
+            module,
+            exports,
+            this,
+            this.mainModule);
+    long start = now();
+    listener.compileStarted(source.getPath());
+    try {
+      int lazyJsonThreshold = options.getLazyJsonThreshold();
+      if (lazyJsonThreshold >= 0 && source.getCode().length() >= lazyJsonThreshold) {
+        try {
+          created.exports = context.asValue(LazyJson.parse(source.getCode()));
+        } catch (IllegalArgumentException ex) {
+          throw new GraalGuestException(
+              "Invalid JSON in " + source.getPath() + ": " + ex.getMessage());
+        }
+      } else {
+        created.exports = parseJson(source.getCode());
+      }
+    } catch (RuntimeException ex) {
+      listener.loadFailed(source.getPath(), ex);
+      throw ex;
+    } finally {
+      listener.compileEnded(source.getPath(), since(start));
+    }
+    created.module.putMember("exports", created.exports);
+    if (options.getRecorder() != null) {
+      options.getRecorder().recordLoad(source.getPath(), since(start), 0);
+    }
     created.setLoaded();
+    loadedModules.put(source.getPath(), created);
     return created;
   }
 
@@ -351,9 +933,16 @@ public class Module implements RequireFunction {
     throw new GraalGuestException("Module not found: " + module);
   }
 
-  private Folder resolveFolder(Folder from, String[] folders) {
+  // The folder holding the module the path refers to
+  private Folder resolveFolder(Folder from, ModulePath path) {
+    return resolveFolder(from, path.getParts(), path.getFolderCount());
+  }
+
+  // Walks the first count parts, without copying them out of the array
+  private Folder resolveFolder(Folder from, String[] parts, int count) {
     Folder current = from;
-    for (String name : folders) {
+    for (int i = 0; i < count; i++) {
+      String name = parts[i];
       switch (name) {
         case "":
           throw new IllegalArgumentException();
@@ -363,7 +952,7 @@ public class Module implements RequireFunction {
           current = current.getParent();
           break;
         default:
-          current = current.getFolder(name);
+          current = getFolder(current, name);
           break;
       }
 
@@ -376,6 +965,50 @@ public class Module implements RequireFunction {
     return current;
   }
 
+  // All the lookups done while resolving modules go through these two methods, so that misses
+  // can be remembered by the negative cache when there is one.
+  private String getFile(Folder parent, String name) {
+    NegativeCache negativeCache = options.getNegativeCache();
+    String path = negativeCache != null ? parent.getPath() : null;
+    if (path != null && negativeCache.isMissing(path, name)) {
+      return null;
+    }
+
+    long start = now();
+    String code = parent.getFile(name);
+    listener.fileProbed(parent, name, code != null, code != null ? code.length() : 0, since(start));
+    if (code == null && path != null) {
+      negativeCache.recordMissing(path, name);
+    }
+    return code;
+  }
+
+  private Folder getFolder(Folder parent, String name) {
+    NegativeCache negativeCache = options.getNegativeCache();
+    String path = negativeCache != null ? parent.getPath() : null;
+    if (path != null && negativeCache.isFolderMissing(path, name)) {
+      return null;
+    }
+
+    long start = now();
+    Folder folder = parent.getFolder(name);
+    listener.folderProbed(parent, name, folder != null, since(start));
+    if (folder == null && path != null) {
+      negativeCache.recordFolderMissing(path, name);
+    }
+    return folder;
+  }
+
+  // Durations are only measured for listeners and recorders, since they may be reported for
+  // every probe
+  private long now() {
+    return timed ? System.nanoTime() : 0;
+  }
+
+  private long since(long start) {
+    return timed ? System.nanoTime() - start : 0;
+  }
+
   private Value newObject() throws PolyglotException {
     return context.eval("js", "({})");
   }
@@ -388,6 +1021,38 @@ public class Module implements RequireFunction {
     return new String[] {filename, filename + ".js", filename + ".json"};
   }
 
+  // Reads the module a folder holds under a name, for the module cache. We need to know whether
+  // it was called, to tell cache hits from misses.
+  private class SourceLoader implements Supplier<ModuleSource> {
+    private final Folder folder;
+    private final String name;
+    boolean called;
+
+    SourceLoader(Folder folder, String name) {
+      this.folder = folder;
+      this.name = name;
+    }
+
+    @Override
+    public ModuleSource get() {
+      called = true;
+      long start = now();
+
+      // First we try to load as a file, trying out various variations on the path
+      ModuleSource found = loadModuleAsFile(folder, name);
+
+      // Then we try to load as a directory
+      if (found == null) {
+        found = loadModuleAsFolder(folder, name);
+      }
+
+      if (found != null) {
+        listener.sourceRead(found.getPath(), found.getCode().length(), since(start));
+      }
+      return found;
+    }
+  }
+
   static class WrappedList implements ProxyArray {
     private final List<Value> list;
 
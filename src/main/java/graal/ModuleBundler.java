@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.graalvm.polyglot.Context;
+
+// Writes the modules reachable from a set of entry points, along with how each of their
+// requires resolves, into a single file to be loaded with BundleFolder. Modules are found by
+// following the require calls with a literal specifier, resolved with the same rules as
+// require itself. Modules that are only required through computed specifiers have to be
+// listed as entry points: bundle returns a warning for each module making such calls, or
+// whose code couldn't be scanned completely.
+//
+// The package.json files of the folders holding the bundled modules are bundled too, so that
+// specifiers missing from the resolution table resolve the same way as in the original tree.
+//
+// It can be run from the command line:
+//
+//   java graal.ModuleBundler <root folder> <bundle file> <entry point>...
+//
+// where entry points are specifiers relative to the root folder, like ./index.
+public class ModuleBundler {
+  private final String rootPath;
+  private final Module resolver;
+  // Code of the bundled files, by path relative to the root folder
+  private final Map<String, String> files = new LinkedHashMap<>();
+  // Resolutions (folder path, specifier, resolved path), by folder path and specifier
+  private final Map<String, String[]> resolutions = new LinkedHashMap<>();
+  private final Deque<ModuleSource> pending = new ArrayDeque<>();
+  private final List<String> warnings = new ArrayList<>();
+
+  private ModuleBundler(Folder root, Module resolver) {
+    this.rootPath = root.getPath();
+    this.resolver = resolver;
+  }
+
+  // Returns the warnings about requires that couldn't be followed
+  public static List<String> bundle(Folder root, List<String> entryPoints, Path output)
+      throws IOException {
+    // The resolution rules live in Module, which is bound to a context, but nothing gets
+    // evaluated in it
+    try (Context context = Context.create()) {
+      Module resolver =
+          Require.enable(context, root, context.eval("js", "({})"), RequireOptions.create());
+      ModuleBundler bundler = new ModuleBundler(root, resolver);
+      for (String entryPoint : entryPoints) {
+        if (!bundler.add(root, entryPoint)) {
+          throw new IOException("Module not found: " + entryPoint);
+        }
+      }
+      bundler.addDependencies();
+      bundler.write(output);
+      return bundler.warnings;
+    }
+  }
+
+  private void addDependencies() {
+    ModuleSource source;
+    while ((source = pending.poll()) != null) {
+      if (source.isJson()) {
+        continue;
+      }
+
+      RequireScanner scanner = RequireScanner.scanned(source.getCode());
+      String path = relativize(source.getPath());
+      if (scanner.getComputedRequires() > 0) {
+        warnings.add(
+            path
+                + ": "
+                + scanner.getComputedRequires()
+                + " require call(s) with a computed specifier; list the modules they load as"
+                + " entry points");
+      }
+      if (scanner.isIncomplete()) {
+        warnings.add(path + ": could not be scanned completely, some requires may be missing");
+      }
+
+      for (String specifier : scanner.getRequires()) {
+        // Requires that can't be resolved are left alone: they may be guarded, or never run
+        add(source.getFolder(), specifier);
+      }
+    }
+  }
+
+  private boolean add(Folder from, String specifier) {
+    // Modules of the same folder often require the same things
+    String key = from.getPath() + '\0' + specifier;
+    if (resolutions.containsKey(key)) {
+      return true;
+    }
+
+    ModuleSource found;
+    try {
+      found = resolver.resolve(from, specifier);
+    } catch (RuntimeException ex) {
+      found = null;
+    }
+
+    String folderPath = relativize(from.getPath());
+    String path = found != null ? relativize(found.getPath()) : null;
+    if (folderPath == null || path == null) {
+      return false;
+    }
+
+    resolutions.put(key, new String[] {folderPath, specifier, path});
+    if (files.putIfAbsent(path.substring(1), found.getCode()) == null) {
+      pending.add(found);
+      addPackageJsons(found.getFolder());
+    }
+    return true;
+  }
+
+  // The package.json files of the folder and its parents, up to the root folder. The one
+  // describing the package a module belongs to can be several folders up.
+  private void addPackageJsons(Folder folder) {
+    for (Folder current = folder; current != null; current = current.getParent()) {
+      String folderPath = relativize(current.getPath());
+      if (folderPath == null) {
+        return;
+      }
+
+      String path = folderPath.substring(1) + "package.json";
+      if (files.containsKey(path)) {
+        // So are the ones of its parents
+        return;
+      }
+      String packageJson = current.getFile("package.json");
+      if (packageJson != null) {
+        files.put(path, packageJson);
+      }
+    }
+  }
+
+  // Turns a path of the root folder into a path of the bundle, which starts with a slash
+  private String relativize(String path) {
+    if (!path.startsWith(rootPath)) {
+      return null;
+    }
+    return "/" + path.substring(rootPath.length()).replace('\\', '/');
+  }
+
+  private void write(Path output) throws IOException {
+    try (OutputStream stream = Files.newOutputStream(output);
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(stream))) {
+      data.writeInt(BundleFolder.MAGIC);
+      data.writeInt(BundleFolder.VERSION);
+
+      data.writeInt(files.size());
+      for (Map.Entry<String, String> file : files.entrySet()) {
+        writeString(data, file.getKey());
+        writeString(data, file.getValue());
+      }
+
+      data.writeInt(resolutions.size());
+      for (String[] resolution : resolutions.values()) {
+        for (String part : resolution) {
+          writeString(data, part);
+        }
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream data, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    data.writeInt(bytes.length);
+    data.write(bytes);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("Usage: ModuleBundler <root folder> <bundle file> <entry point>...");
+      System.exit(1);
+    }
+
+    Folder root = FilesystemFolder.create(new File(args[0]), "UTF-8");
+    for (String warning :
+        bundle(root, Arrays.asList(args).subList(2, args.length), new File(args[1]).toPath())) {
+      System.err.println("Warning: " + warning);
+    }
+  }
+}
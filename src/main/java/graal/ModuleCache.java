@@ -4,17 +4,302 @@
 
 package graal;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
+// Caches resolved module sources by path. It only holds context-independent data, so a single
+// instance can be shared by every context (and thread) loading from the same root folder; the
+// modules themselves, and their exports, are still kept per context.
+//
+// Sources are stored under their effective path, and the other paths they were requested
+// through are kept as aliases pointing to it, so each source only counts once against the
+// limits of the policy.
 public class ModuleCache {
-  private Map<String, Module> modules = new HashMap<>();
+  private final ModuleCachePolicy policy;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final Map<String, String> aliases = new ConcurrentHashMap<>();
+  private final Map<String, CompletableFuture<ModuleSource>> loading = new ConcurrentHashMap<>();
+  private final Object evictionLock = new Object();
+  private final AtomicLong weight = new AtomicLong();
+  private final PathKeys pathKeys = new PathKeys();
+  private volatile long lastExpirationSweep;
 
-  public Module get(String fullPath) {
-    return modules.get(fullPath);
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder loadCount = new LongAdder();
+  private final LongAdder totalLoadTime = new LongAdder();
+
+  public ModuleCache() {
+    this(ModuleCachePolicy.unbounded());
+  }
+
+  public ModuleCache(ModuleCachePolicy policy) {
+    this.policy = policy;
+  }
+
+  public ModuleSource get(String fullPath) {
+    ModuleSource found = lookup(fullPath);
+    if (found != null) {
+      hitCount.increment();
+    } else {
+      missCount.increment();
+    }
+    return found;
+  }
+
+  // Like get, for callers about to fall back to load on a miss: only hits are counted, since load
+  // counts the miss itself.
+  ModuleSource getIfPresent(String fullPath) {
+    ModuleSource found = lookup(fullPath);
+    if (found != null) {
+      hitCount.increment();
+    }
+    return found;
+  }
+
+  public void put(String fullPath, ModuleSource source) {
+    store(source, true);
+    if (!fullPath.equals(source.getPath())) {
+      addAlias(fullPath, source.getPath());
+    }
+    evictIfNeeded();
+  }
+
+  // The path of the given name in the folder, as a key of this cache. Equal keys are shared.
+  String key(String folderPath, String name) {
+    return pathKeys.join(folderPath, name);
+  }
+
+  // Returns the cached source for the path, calling the loader if there is none. When several
+  // threads ask for the same missing path at once, only one of them runs the loader and the
+  // others wait for its result. Failed lookups (null) are not cached.
+  public ModuleSource load(String fullPath, Supplier<ModuleSource> loader) {
+    ModuleSource found = lookup(fullPath);
+    if (found != null) {
+      hitCount.increment();
+      return found;
+    }
+    missCount.increment();
+
+    CompletableFuture<ModuleSource> future = new CompletableFuture<>();
+    CompletableFuture<ModuleSource> inFlight = loading.putIfAbsent(fullPath, future);
+    if (inFlight != null) {
+      return await(inFlight);
+    }
+
+    try {
+      // Someone may have completed the load between our first lookup and now
+      found = lookup(fullPath);
+      if (found == null) {
+        long start = System.nanoTime();
+        try {
+          found = loader.get();
+        } finally {
+          loadCount.increment();
+          totalLoadTime.add(System.nanoTime() - start);
+        }
+
+        if (found != null) {
+          // We keep a cache entry for the requested path as well as for the effective path of
+          // the module. This avoids having to load package.json every time, etc.
+          store(found, false);
+          if (!fullPath.equals(found.getPath())) {
+            addAlias(fullPath, found.getPath());
+          }
+          evictIfNeeded();
+        }
+      }
+      future.complete(found);
+      return found;
+    } catch (RuntimeException | Error ex) {
+      future.completeExceptionally(ex);
+      throw ex;
+    } finally {
+      loading.remove(fullPath, future);
+    }
+  }
+
+  // Removes the source for the path, along with all the aliases that point to it
+  public void invalidate(String fullPath) {
+    String effectivePath = aliases.getOrDefault(fullPath, fullPath);
+    aliases.remove(fullPath);
+    Entry entry = entries.get(effectivePath);
+    if (entry != null) {
+      remove(effectivePath, entry);
+    }
+  }
+
+  public void clear() {
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      remove(entry.getKey(), entry.getValue());
+    }
+    aliases.clear();
+  }
+
+  // Number of distinct sources in the cache
+  public long size() {
+    return entries.size();
+  }
+
+  public long weight() {
+    return weight.get();
+  }
+
+  public ModuleCacheStats stats() {
+    return new ModuleCacheStats(
+        hitCount.sum(),
+        missCount.sum(),
+        evictionCount.sum(),
+        loadCount.sum(),
+        totalLoadTime.sum(),
+        entries.size(),
+        weight.get());
   }
 
-  public void put(String fullPath, Module module) {
-    modules.put(fullPath, module);
+  private ModuleSource lookup(String fullPath) {
+    String effectivePath = aliases.get(fullPath);
+    Entry entry = entries.get(effectivePath != null ? effectivePath : fullPath);
+    if (entry == null) {
+      if (effectivePath != null) {
+        // The source was evicted, so the alias is of no use anymore
+        aliases.remove(fullPath, effectivePath);
+      }
+      return null;
+    }
+
+    if (policy.isBounded() || policy.isExpiring()) {
+      long now = policy.now();
+      if (isExpired(entry, now)) {
+        if (remove(entry.source.getPath(), entry)) {
+          evictionCount.increment();
+        }
+        return null;
+      }
+      entry.lastAccess = now;
+    }
+
+    return entry.source;
+  }
+
+  private void store(ModuleSource source, boolean replace) {
+    Entry entry = new Entry(source, policy.weigh(source), policy.now());
+    Entry previous =
+        replace
+            ? entries.put(source.getPath(), entry)
+            : entries.putIfAbsent(source.getPath(), entry);
+
+    if (previous == null) {
+      weight.addAndGet(entry.weight);
+    } else if (replace) {
+      weight.addAndGet(entry.weight - previous.weight);
+      entry.aliases.addAll(previous.aliases);
+    }
+  }
+
+  private void addAlias(String fullPath, String effectivePath) {
+    Entry entry = entries.get(effectivePath);
+    if (entry != null) {
+      aliases.put(fullPath, effectivePath);
+      entry.aliases.add(fullPath);
+    }
+  }
+
+  private boolean remove(String effectivePath, Entry entry) {
+    if (!entries.remove(effectivePath, entry)) {
+      return false;
+    }
+
+    weight.addAndGet(-entry.weight);
+    for (String alias : entry.aliases) {
+      aliases.remove(alias, effectivePath);
+    }
+    return true;
+  }
+
+  private void evictIfNeeded() {
+    if (policy.isExpiring()) {
+      expireEntries();
+    }
+
+    if (!policy.isBounded()) {
+      return;
+    }
+
+    synchronized (evictionLock) {
+      while (entries.size() > policy.getMaximumEntries()
+          || weight.get() > policy.getMaximumWeight()) {
+        // Finding the least recently used entry is a linear scan, but this only happens once
+        // the cache is full and module caches hold at most a few thousand sources.
+        Map.Entry<String, Entry> victim = null;
+        for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+          if (victim == null || candidate.getValue().lastAccess < victim.getValue().lastAccess) {
+            victim = candidate;
+          }
+        }
+
+        if (victim == null) {
+          break;
+        }
+
+        if (remove(victim.getKey(), victim.getValue())) {
+          evictionCount.increment();
+        }
+      }
+    }
+  }
+
+  private void expireEntries() {
+    // Expired entries are dropped lazily when looked up; a sweep over the whole cache only runs
+    // every so often to reclaim the ones nobody asks for anymore.
+    long now = policy.now();
+    if (now - lastExpirationSweep < policy.getExpireAfterAccessNanos() / 2) {
+      return;
+    }
+    lastExpirationSweep = now;
+
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      if (isExpired(entry.getValue(), now) && remove(entry.getKey(), entry.getValue())) {
+        evictionCount.increment();
+      }
+    }
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    return policy.isExpiring() && now - entry.lastAccess > policy.getExpireAfterAccessNanos();
+  }
+
+  private static ModuleSource await(CompletableFuture<ModuleSource> future) {
+    try {
+      return future.join();
+    } catch (CompletionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw ex;
+    }
+  }
+
+  private static class Entry {
+    final ModuleSource source;
+    final long weight;
+    final Set<String> aliases = ConcurrentHashMap.newKeySet();
+    volatile long lastAccess;
+
+    Entry(ModuleSource source, long weight, long lastAccess) {
+      this.source = source;
+      this.weight = weight;
+      this.lastAccess = lastAccess;
+    }
   }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+// Limits applied by a ModuleCache. The default policy is unbounded; once either maximum is
+// reached, the least recently used sources are evicted first.
+public class ModuleCachePolicy {
+  private long maximumEntries = Long.MAX_VALUE;
+  private long maximumWeight = Long.MAX_VALUE;
+  private ToLongFunction<ModuleSource> weigher = source -> 2L * source.getCode().length();
+  private long expireAfterAccessNanos = 0;
+  private LongSupplier ticker = System::nanoTime;
+
+  public static ModuleCachePolicy unbounded() {
+    return new ModuleCachePolicy();
+  }
+
+  // Maximum number of distinct sources kept in the cache. Aliases (the requested paths that
+  // resolved to a source) don't count against it.
+  public ModuleCachePolicy maximumEntries(long maximumEntries) {
+    this.maximumEntries = maximumEntries;
+    return this;
+  }
+
+  // Maximum total weight of the cached sources. By default, a source weighs two bytes for each
+  // character of its code, which is roughly what the string takes on the heap.
+  public ModuleCachePolicy maximumWeight(long maximumWeight) {
+    this.maximumWeight = maximumWeight;
+    return this;
+  }
+
+  public ModuleCachePolicy weigher(ToLongFunction<ModuleSource> weigher) {
+    this.weigher = weigher;
+    return this;
+  }
+
+  public ModuleCachePolicy expireAfterAccess(long duration, TimeUnit unit) {
+    this.expireAfterAccessNanos = unit.toNanos(duration);
+    return this;
+  }
+
+  ModuleCachePolicy ticker(LongSupplier ticker) {
+    this.ticker = ticker;
+    return this;
+  }
+
+  public long getMaximumEntries() {
+    return maximumEntries;
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  public long getExpireAfterAccessNanos() {
+    return expireAfterAccessNanos;
+  }
+
+  long weigh(ModuleSource source) {
+    return weigher.applyAsLong(source);
+  }
+
+  long now() {
+    return ticker.getAsLong();
+  }
+
+  boolean isBounded() {
+    return maximumEntries != Long.MAX_VALUE || maximumWeight != Long.MAX_VALUE;
+  }
+
+  boolean isExpiring() {
+    return expireAfterAccessNanos > 0;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+// A point-in-time snapshot of the counters kept by a ModuleCache
+public class ModuleCacheStats {
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final long loadCount;
+  private final long totalLoadTime;
+  private final long entryCount;
+  private final long weight;
+
+  public ModuleCacheStats(
+      long hitCount,
+      long missCount,
+      long evictionCount,
+      long loadCount,
+      long totalLoadTime,
+      long entryCount,
+      long weight) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.loadCount = loadCount;
+    this.totalLoadTime = totalLoadTime;
+    this.entryCount = entryCount;
+    this.weight = weight;
+  }
+
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  public long getMissCount() {
+    return missCount;
+  }
+
+  public double getHitRate() {
+    long requests = hitCount + missCount;
+    return requests == 0 ? 1.0 : (double) hitCount / requests;
+  }
+
+  // Includes entries that expired after not being accessed for too long
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  public long getLoadCount() {
+    return loadCount;
+  }
+
+  // Total time spent resolving and reading sources, in nanoseconds
+  public long getTotalLoadTime() {
+    return totalLoadTime;
+  }
+
+  public double getAverageLoadPenalty() {
+    return loadCount == 0 ? 0.0 : (double) totalLoadTime / loadCount;
+  }
+
+  public long getEntryCount() {
+    return entryCount;
+  }
+
+  public long getWeight() {
+    return weight;
+  }
+
+  @Override
+  public String toString() {
+    return "ModuleCacheStats{hits="
+        + hitCount
+        + ", misses="
+        + missCount
+        + ", evictions="
+        + evictionCount
+        + ", loads="
+        + loadCount
+        + ", totalLoadTime="
+        + totalLoadTime
+        + "ns, entries="
+        + entryCount
+        + ", weight="
+        + weight
+        + "}";
+  }
+}
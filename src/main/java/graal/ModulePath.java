@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// A specifier (or any path) split into the folders leading to it and the name to look up in the
+// last one. The same few specifiers get required over and over, so they are only parsed once:
+// parse hands out a shared instance, and the parts it exposes must not be modified.
+final class ModulePath {
+  static final int MAX_INTERNED = 8192;
+
+  private static final Map<String, ModulePath> interned = new ConcurrentHashMap<>();
+
+  private final String[] parts;
+
+  private ModulePath(String[] parts) {
+    this.parts = parts;
+  }
+
+  // Returns null when the path has no parts at all, like "/"
+  static ModulePath parse(String path) {
+    ModulePath found = interned.get(path);
+    if (found != null) {
+      return found;
+    }
+
+    String[] parts = Paths.splitPath(path);
+    if (parts.length == 0) {
+      return null;
+    }
+
+    found = new ModulePath(parts);
+    // Past the limit, specifiers are most likely computed; we parse them every time instead of
+    // holding on to all of them
+    if (interned.size() < MAX_INTERNED) {
+      ModulePath previous = interned.putIfAbsent(path, found);
+      if (previous != null) {
+        return previous;
+      }
+    }
+    return found;
+  }
+
+  String[] getParts() {
+    return parts;
+  }
+
+  int getFolderCount() {
+    return parts.length - 1;
+  }
+
+  String getName() {
+    return parts[parts.length - 1];
+  }
+}
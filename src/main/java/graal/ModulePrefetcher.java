@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Resolves and reads the literal requires of a module on background threads while the module
+// itself runs, so that reading its children overlaps with executing it instead of happening one
+// require at a time. The sources land in the module cache, where require finds them (or waits
+// for a read already in flight, rather than starting another one).
+//
+// Prefetching is speculative: a require that never runs only costs a wasted read, and requests
+// that don't fit in the queue are dropped. A prefetcher can be shared by several contexts.
+public class ModulePrefetcher implements Closeable {
+  static final int DEFAULT_QUEUE_SIZE = 1024;
+
+  private final ExecutorService executor;
+
+  private ModulePrefetcher(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  public static ModulePrefetcher create(int threads) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(DEFAULT_QUEUE_SIZE),
+            runnable -> {
+              Thread thread = new Thread(runnable, "module-prefetcher");
+              thread.setDaemon(true);
+              return thread;
+            },
+            new ThreadPoolExecutor.DiscardPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return new ModulePrefetcher(executor);
+  }
+
+  // The executor is shut down when the prefetcher is closed
+  public static ModulePrefetcher create(ExecutorService executor) {
+    return new ModulePrefetcher(executor);
+  }
+
+  // Called with the source of a module that is about to run; resolver is any module of the
+  // context, which only serves to apply the resolution rules and caches.
+  void prefetch(Module resolver, ModuleSource source) {
+    ResolutionCache resolutions = resolver.getOptions().getResolutionCache();
+    Folder from = source.getFolder();
+    String folderPath = resolutions != null ? from.getPath() : null;
+
+    for (String specifier : source.getRequires()) {
+      if (folderPath != null && resolutions.get(folderPath, specifier) != null) {
+        continue;
+      }
+
+      try {
+        executor.execute(() -> resolve(resolver, from, specifier, folderPath));
+      } catch (RejectedExecutionException ex) {
+        // Closed; requires will just read the modules themselves
+        return;
+      }
+    }
+  }
+
+  private static void resolve(Module resolver, Folder from, String specifier, String folderPath) {
+    try {
+      ModuleSource found = resolver.resolve(from, specifier);
+      if (found != null && folderPath != null) {
+        resolver.getOptions().getResolutionCache().put(folderPath, specifier, found.getPath());
+      }
+    } catch (RuntimeException ex) {
+      // The require itself will report the error, if it ever runs
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Resolves and reads a set of modules, and everything they require through literal specifiers,
+// on an executor. The sources end up in the module cache (and the resolutions in the resolution
+// cache, when there is one), so that requiring the modules afterwards doesn't touch any folder.
+//
+// Modules are resolved level by level: first the specifiers we were given, then the ones found
+// in their code, and so on. This keeps every read of a level in flight at the same time.
+class ModulePreloader {
+  private final Module root;
+  private final ExecutorService executor;
+  private final Set<String> seenRequests = new HashSet<>();
+  private final Set<String> seenModules = new HashSet<>();
+
+  private ModulePreloader(Module root, ExecutorService executor) {
+    this.root = root;
+    this.executor = executor;
+  }
+
+  // Also reads the modules at the given paths, which were resolved before. Returns the
+  // specifiers that could be resolved, in the order they were given.
+  static List<String> load(
+      Module root, List<String> specifiers, List<String> resolvedPaths, ExecutorService executor)
+      throws InterruptedException {
+    return new ModulePreloader(root, executor).load(specifiers, resolvedPaths);
+  }
+
+  private List<String> load(List<String> specifiers, List<String> resolvedPaths)
+      throws InterruptedException {
+    List<Request> level = new ArrayList<>();
+    for (String specifier : specifiers) {
+      addRequest(level, root.getFolder(), specifier);
+    }
+
+    List<Request> roots = new ArrayList<>(level);
+    for (String resolvedPath : resolvedPaths) {
+      if (seenRequests.add(resolvedPath)) {
+        level.add(new Request(resolvedPath));
+      }
+    }
+
+    while (!level.isEmpty()) {
+      List<Future<ModuleSource>> resolved = executor.invokeAll(level);
+
+      List<Request> next = new ArrayList<>();
+      for (int i = 0; i < level.size(); i++) {
+        ModuleSource source = get(resolved.get(i));
+        level.get(i).source = source;
+        if (source != null && seenModules.add(source.getPath())) {
+          for (String specifier : source.getRequires()) {
+            addRequest(next, source.getFolder(), specifier);
+          }
+        }
+      }
+      level = next;
+    }
+
+    List<String> found = new ArrayList<>();
+    for (Request request : roots) {
+      if (request.source != null) {
+        found.add(request.specifier);
+      }
+    }
+    return found;
+  }
+
+  private void addRequest(List<Request> level, Folder from, String specifier) {
+    if (seenRequests.add(from.getPath() + '\0' + specifier)) {
+      level.add(new Request(from, specifier));
+    }
+  }
+
+  private static ModuleSource get(Future<ModuleSource> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException ex) {
+      // Whoever requires the module will get the error; there's nothing to preload
+      return null;
+    }
+  }
+
+  // Reads a manifest, which is either a list of specifiers (one per line) or the output of a
+  // ModuleRecorder. Blank lines and lines starting with # are ignored.
+  //
+  // The specifiers the host required are added to specifiers, and the paths of the modules
+  // required by other modules to resolvedPaths. Manifests recorded before the requiring module
+  // was written out don't tell them apart, so every require made from the root folder is taken
+  // as coming from the host. Recorded resolutions are added to the resolution cache of the root
+  // module, when it has one.
+  static void readManifest(
+      Module root, Path manifest, List<String> specifiers, List<String> resolvedPaths)
+      throws IOException {
+    String rootPath = root.getFolder().getPath();
+    ResolutionCache resolutions = root.getOptions().getResolutionCache();
+    try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.trim().isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] columns = line.split("\t");
+        if (columns.length < 3) {
+          specifiers.add(columns[0].trim());
+          continue;
+        }
+
+        String folderPath = ModuleRecorder.toFolderPath(rootPath, columns[1]);
+        String resolvedPath = ModuleRecorder.toFolderPath(rootPath, columns[2]);
+        if (resolutions != null) {
+          resolutions.put(folderPath, columns[0], resolvedPath);
+        }
+        boolean fromMain =
+            columns.length > 7
+                ? columns[7].equals(ModuleRecorder.FROM_MAIN)
+                : columns[1].equals("/");
+        if (fromMain) {
+          specifiers.add(columns[0]);
+        } else {
+          resolvedPaths.add(resolvedPath);
+        }
+      }
+    }
+  }
+
+  private class Request implements Callable<ModuleSource> {
+    final Folder from;
+    final String specifier;
+    final String resolvedPath;
+    ModuleSource source;
+
+    Request(Folder from, String specifier) {
+      this.from = from;
+      this.specifier = specifier;
+      this.resolvedPath = null;
+    }
+
+    Request(String resolvedPath) {
+      this.from = null;
+      this.specifier = null;
+      this.resolvedPath = resolvedPath;
+    }
+
+    @Override
+    public ModuleSource call() {
+      if (resolvedPath != null) {
+        return root.loadResolvedSource(resolvedPath);
+      }
+
+      ModuleSource found = root.resolve(from, specifier);
+      ResolutionCache resolutions = root.getOptions().getResolutionCache();
+      if (found != null && resolutions != null) {
+        resolutions.put(from.getPath(), specifier, found.getPath());
+      }
+      return found;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.List;
+
+// What a ModuleProfiler measured for one module. Times are in nanoseconds and add up every time
+// the module was loaded (by several contexts, or again after changing).
+public class ModuleProfile {
+  private final String path;
+  private final String specifier;
+  private final String parent;
+  private final int depth;
+  private final int loadCount;
+  private final long resolveNanos;
+  private final long compileNanos;
+  private final long executeNanos;
+  private final long childNanos;
+  private final List<String> requires;
+
+  ModuleProfile(
+      String path,
+      String specifier,
+      String parent,
+      int depth,
+      int loadCount,
+      long resolveNanos,
+      long compileNanos,
+      long executeNanos,
+      long childNanos,
+      List<String> requires) {
+    this.path = path;
+    this.specifier = specifier;
+    this.parent = parent;
+    this.depth = depth;
+    this.loadCount = loadCount;
+    this.resolveNanos = resolveNanos;
+    this.compileNanos = compileNanos;
+    this.executeNanos = executeNanos;
+    this.childNanos = childNanos;
+    this.requires = requires;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  // The specifier the module was first loaded through
+  public String getSpecifier() {
+    return specifier;
+  }
+
+  // Path of the module that first loaded this one, or null when it was required from the host
+  // or the main module
+  public String getParent() {
+    return parent;
+  }
+
+  // Position in the require tree, where the modules without a parent are at 0
+  public int getDepth() {
+    return depth;
+  }
+
+  public int getLoadCount() {
+    return loadCount;
+  }
+
+  public long getResolveNanos() {
+    return resolveNanos;
+  }
+
+  public long getCompileNanos() {
+    return compileNanos;
+  }
+
+  public long getExecuteNanos() {
+    return executeNanos;
+  }
+
+  // Resolving, compiling and executing the module, including the modules it loaded
+  public long getInclusiveNanos() {
+    return resolveNanos + compileNanos + executeNanos;
+  }
+
+  // The inclusive time, minus the time spent loading the modules it loaded
+  public long getExclusiveNanos() {
+    return Math.max(getInclusiveNanos() - childNanos, 0);
+  }
+
+  // Paths of every module it required, whether it loaded them or they were loaded already
+  public List<String> getRequires() {
+    return requires;
+  }
+}
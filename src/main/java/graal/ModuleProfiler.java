@@ -0,0 +1,325 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// A listener measuring how long each module takes to load, and where it sits in the require
+// tree: the module that first loaded it is its parent. This shows which dependencies dominate
+// startup, to be loaded lazily or dropped. A profiler can be shared by several contexts, which
+// are profiled as one.
+//
+// The profile can be written as collapsed stacks, one line per module with its exclusive time in
+// microseconds, which flame graph tools read:
+//
+//   /index.js;/node_modules/lib/index.js 1234
+//
+// or as a dependency graph, in JSON or in DOT for Graphviz. Edges of the require tree are solid
+// in DOT; requires of modules that were already loaded are dashed.
+public class ModuleProfiler implements RequireListener {
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+  private final ThreadLocal<ThreadState> states = ThreadLocal.withInitial(ThreadState::new);
+
+  @Override
+  public void resolveStarted(String folderPath, String specifier) {
+    states.get().startResolution(specifier);
+  }
+
+  @Override
+  public void resolveEnded(String folderPath, String specifier, String resolvedPath, long nanos) {
+    states.get().resolveNanos = nanos;
+  }
+
+  @Override
+  public void cacheHit(Cache cache, String key) {
+    if (cache == Cache.RESOLUTION) {
+      states.get().startResolution(key);
+    } else if (cache == Cache.LOADED) {
+      Frame current = states.get().executing.peek();
+      if (current != null && !current.path.equals(key)) {
+        current.requires.add(key);
+      }
+    }
+  }
+
+  @Override
+  public void compileStarted(String path) {
+    ThreadState state = states.get();
+    Frame parent = state.executing.peek();
+    Frame frame = new Frame(path, state.specifier, parent != null ? parent.path : null);
+    frame.resolveNanos = state.resolveNanos;
+    state.startResolution(null);
+    // A module whose compilation failed is left here, and dropped by the next one
+    state.compiling = frame;
+    if (parent != null) {
+      parent.requires.add(path);
+    }
+  }
+
+  @Override
+  public void compileEnded(String path, long nanos) {
+    ThreadState state = states.get();
+    Frame frame = state.compiling;
+    if (frame == null || !frame.path.equals(path)) {
+      return;
+    }
+
+    frame.compileNanos = nanos;
+    if (frame.failed) {
+      state.compiling = null;
+    } else if (path.regionMatches(true, path.length() - 5, ".json", 0, 5)) {
+      state.compiling = null;
+      finish(state, frame);
+    }
+  }
+
+  @Override
+  public void executeStarted(String path) {
+    ThreadState state = states.get();
+    Frame frame = state.compiling;
+    if (frame != null && frame.path.equals(path)) {
+      state.compiling = null;
+      state.executing.push(frame);
+    }
+  }
+
+  @Override
+  public void executeEnded(String path, long nanos) {
+    ThreadState state = states.get();
+    Frame frame = state.executing.peek();
+    if (frame != null && frame.path.equals(path)) {
+      state.executing.pop();
+      frame.executeNanos = nanos;
+      if (!frame.failed) {
+        finish(state, frame);
+      }
+    }
+  }
+
+  // Failed loads are left out of the profile: the module will be loaded again by the next
+  // require, and counting both would inflate its load count and the time of its parent
+  @Override
+  public void loadFailed(String path, RuntimeException exception) {
+    ThreadState state = states.get();
+    Frame frame = state.compiling != null ? state.compiling : state.executing.peek();
+    if (frame != null && frame.path.equals(path)) {
+      frame.failed = true;
+    }
+  }
+
+  private void finish(ThreadState state, Frame frame) {
+    long inclusive = frame.resolveNanos + frame.compileNanos + frame.executeNanos;
+    Frame parent = state.executing.peek();
+    if (parent != null) {
+      parent.childNanos += inclusive;
+    }
+
+    synchronized (this) {
+      Entry entry = entries.computeIfAbsent(frame.path, p -> new Entry(frame));
+      entry.loadCount++;
+      entry.resolveNanos += frame.resolveNanos;
+      entry.compileNanos += frame.compileNanos;
+      entry.executeNanos += frame.executeNanos;
+      entry.childNanos += frame.childNanos;
+      entry.requires.addAll(frame.requires);
+    }
+  }
+
+  // The modules loaded so far, in the order they finished loading
+  public synchronized List<ModuleProfile> getProfiles() {
+    List<ModuleProfile> profiles = new ArrayList<>();
+    for (Entry entry : entries.values()) {
+      profiles.add(
+          new ModuleProfile(
+              entry.path,
+              entry.specifier,
+              entry.parent,
+              getStack(entry).size() - 1,
+              entry.loadCount,
+              entry.resolveNanos,
+              entry.compileNanos,
+              entry.executeNanos,
+              entry.childNanos,
+              new ArrayList<>(entry.requires)));
+    }
+    return profiles;
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  public void writeCollapsedStacks(Writer writer) throws IOException {
+    for (ModuleProfile profile : getProfiles()) {
+      writer.write(String.join(";", getStack(profile.getPath())));
+      writer.write(' ');
+      writer.write(Long.toString(TimeUnit.NANOSECONDS.toMicros(profile.getExclusiveNanos())));
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  public void writeJson(Writer writer) throws IOException {
+    writer.write("{\"modules\": [");
+    String separator = "\n";
+    for (ModuleProfile profile : getProfiles()) {
+      writer.write(separator);
+      separator = ",\n";
+      writer.write("  {\"path\": " + quote(profile.getPath()));
+      writer.write(", \"specifier\": " + quote(profile.getSpecifier()));
+      writer.write(", \"parent\": " + quote(profile.getParent()));
+      writer.write(", \"depth\": " + profile.getDepth());
+      writer.write(", \"loads\": " + profile.getLoadCount());
+      writer.write(", \"inclusive_us\": " + micros(profile.getInclusiveNanos()));
+      writer.write(", \"exclusive_us\": " + micros(profile.getExclusiveNanos()));
+      writer.write(", \"resolve_us\": " + micros(profile.getResolveNanos()));
+      writer.write(", \"compile_us\": " + micros(profile.getCompileNanos()));
+      writer.write(", \"execute_us\": " + micros(profile.getExecuteNanos()));
+      writer.write(", \"requires\": [");
+      List<String> requires = profile.getRequires();
+      for (int i = 0; i < requires.size(); i++) {
+        writer.write((i > 0 ? ", " : "") + quote(requires.get(i)));
+      }
+      writer.write("]}");
+    }
+    writer.write("\n]}\n");
+    writer.flush();
+  }
+
+  public void writeDot(Writer writer) throws IOException {
+    List<ModuleProfile> profiles = getProfiles();
+    Map<String, String> parents = new HashMap<>();
+    for (ModuleProfile profile : profiles) {
+      parents.put(profile.getPath(), profile.getParent());
+    }
+
+    writer.write("digraph modules {\n");
+    writer.write("  node [shape=box];\n");
+    for (ModuleProfile profile : profiles) {
+      String label =
+          String.format(
+              "%s\\n%.1f ms (%.1f ms self)",
+              profile.getPath(),
+              profile.getInclusiveNanos() / 1e6,
+              profile.getExclusiveNanos() / 1e6);
+      writer.write("  " + quote(profile.getPath()) + " [label=" + quote(label, false) + "];\n");
+    }
+    for (ModuleProfile profile : profiles) {
+      for (String required : profile.getRequires()) {
+        boolean tree = profile.getPath().equals(parents.get(required));
+        writer.write("  " + quote(profile.getPath()) + " -> " + quote(required));
+        writer.write(tree ? ";\n" : " [style=dashed];\n");
+      }
+    }
+    writer.write("}\n");
+    writer.flush();
+  }
+
+  private synchronized List<String> getStack(String path) {
+    Entry entry = entries.get(path);
+    return entry != null ? getStack(entry) : new ArrayList<>();
+  }
+
+  // The paths of the modules from the top of the tree down to the entry
+  private List<String> getStack(Entry entry) {
+    Deque<String> stack = new ArrayDeque<>();
+    Set<String> seen = new HashSet<>();
+    Entry current = entry;
+    // Modules loaded again after changing may have been loaded by their own descendants
+    while (current != null && seen.add(current.path)) {
+      stack.push(current.path);
+      current = current.parent != null ? entries.get(current.parent) : null;
+    }
+    return new ArrayList<>(stack);
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  private static String quote(String value) {
+    return quote(value, true);
+  }
+
+  private static String quote(String value, boolean escapeBackslashes) {
+    if (value == null) {
+      return "null";
+    }
+
+    StringBuilder quoted = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || (c == '\\' && escapeBackslashes)) {
+        quoted.append('\\').append(c);
+      } else if (c < 0x20) {
+        quoted.append(String.format("\\u%04x", (int) c));
+      } else {
+        quoted.append(c);
+      }
+    }
+    return quoted.append('"').toString();
+  }
+
+  private static class Entry {
+    final String path;
+    final String specifier;
+    final String parent;
+    final Set<String> requires = new LinkedHashSet<>();
+    int loadCount;
+    long resolveNanos;
+    long compileNanos;
+    long executeNanos;
+    long childNanos;
+
+    Entry(Frame frame) {
+      this.path = frame.path;
+      this.specifier = frame.specifier;
+      this.parent = frame.parent;
+    }
+  }
+
+  // A module being loaded on a thread
+  private static class Frame {
+    final String path;
+    final String specifier;
+    final String parent;
+    final Set<String> requires = new LinkedHashSet<>();
+    long resolveNanos;
+    long compileNanos;
+    long executeNanos;
+    long childNanos;
+    boolean failed;
+
+    Frame(String path, String specifier, String parent) {
+      this.path = path;
+      this.specifier = specifier;
+      this.parent = parent;
+    }
+  }
+
+  private static class ThreadState {
+    String specifier;
+    long resolveNanos;
+    Frame compiling;
+    final Deque<Frame> executing = new ArrayDeque<>();
+
+    void startResolution(String specifier) {
+      this.specifier = specifier;
+      this.resolveNanos = 0;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Records every successful resolution made by require, along with the time spent resolving,
+// compiling and executing each module, so that it can be written out as a manifest and replayed
+// on the next startup with Require.preload. A recorder can be shared by several contexts, as
+// long as they load from the same root folder.
+//
+// The manifest has one line per resolution, in the order they were first made, with these
+// tab-separated columns:
+//
+//   specifier, requesting folder, resolved path, load order,
+//   resolution time, compile time and execution time (in microseconds),
+//   requiring module
+//
+// Paths are relative to the root folder, which is "/", and always use slashes, so that a
+// manifest recorded in one deployment can be replayed in another one. Times are only given on
+// the line that first loaded each module, and the execution time includes the modules it
+// required. The resolution time covers probing the folders and reading the source; it is 0
+// when the resolution came from the resolution cache. The requiring module is <main> when the
+// specifier was required by the host, through the module returned by Require.enable.
+public class ModuleRecorder {
+  static final String HEADER =
+      "# specifier\tfolder\tresolved\torder\tresolve_us\tcompile_us\texecute_us\tfrom";
+  static final String FROM_MAIN = "<main>";
+
+  private volatile String rootPath;
+  // By folder, then specifier, so that finding a resolution that was already recorded (which
+  // is what happens on every warm require) takes neither an allocation nor the lock
+  private final Map<String, Map<String, Resolution>> resolutions = new ConcurrentHashMap<>();
+  private int resolutionCount;
+  private final Map<String, long[]> timings = new HashMap<>();
+
+  synchronized void setRootPath(String rootPath) {
+    if (this.rootPath == null) {
+      this.rootPath = rootPath;
+    }
+  }
+
+  // from is the path of the requiring module, or null when the host required the specifier
+  void recordResolution(
+      String folderPath, String specifier, String resolvedPath, String from, long resolveNanos) {
+    Map<String, Resolution> specifiers = resolutions.get(folderPath);
+    Resolution resolution = specifiers != null ? specifiers.get(specifier) : null;
+    if (resolution == null) {
+      synchronized (this) {
+        specifiers = resolutions.computeIfAbsent(folderPath, path -> new ConcurrentHashMap<>());
+        resolution = specifiers.get(specifier);
+        if (resolution == null) {
+          resolution =
+              new Resolution(folderPath, specifier, resolvedPath, from, resolutionCount++);
+          specifiers.put(specifier, resolution);
+          timings.computeIfAbsent(resolvedPath, path -> new long[3])[0] += resolveNanos;
+        }
+      }
+    }
+
+    if (from == null && !resolution.fromMain) {
+      resolution.fromMain = true;
+    }
+  }
+
+  synchronized void recordLoad(String path, long compileNanos, long executeNanos) {
+    long[] timing = timings.computeIfAbsent(path, p -> new long[3]);
+    timing[1] += compileNanos;
+    timing[2] += executeNanos;
+  }
+
+  public synchronized int size() {
+    return resolutionCount;
+  }
+
+  public void write(Path manifest) throws IOException {
+    try (BufferedWriter writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+      write(writer);
+    }
+  }
+
+  public synchronized void write(Writer writer) throws IOException {
+    writer.write(HEADER);
+    writer.write('\n');
+
+    List<Resolution> ordered = new ArrayList<>();
+    for (Map<String, Resolution> specifiers : resolutions.values()) {
+      ordered.addAll(specifiers.values());
+    }
+    ordered.sort(Comparator.comparingInt(resolution -> resolution.order));
+
+    Set<String> written = new HashSet<>();
+    int order = 0;
+    for (Resolution resolution : ordered) {
+      String folderPath = relativize(resolution.folderPath);
+      String resolvedPath = relativize(resolution.resolvedPath);
+      if (folderPath == null || resolvedPath == null) {
+        continue;
+      }
+
+      long[] timing = new long[3];
+      if (written.add(resolution.resolvedPath)) {
+        timing = timings.getOrDefault(resolution.resolvedPath, timing);
+      }
+
+      String from = FROM_MAIN;
+      if (!resolution.fromMain) {
+        String relativeFrom = relativize(resolution.from);
+        from = relativeFrom != null ? relativeFrom : resolution.from;
+      }
+
+      writer.write(
+          String.join(
+              "\t",
+              resolution.specifier,
+              folderPath,
+              resolvedPath,
+              Integer.toString(order++),
+              Long.toString(TimeUnit.NANOSECONDS.toMicros(timing[0])),
+              Long.toString(TimeUnit.NANOSECONDS.toMicros(timing[1])),
+              Long.toString(TimeUnit.NANOSECONDS.toMicros(timing[2])),
+              from));
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  private String relativize(String path) {
+    if (rootPath == null || !path.startsWith(rootPath)) {
+      return null;
+    }
+    return "/" + path.substring(rootPath.length()).replace('\\', '/');
+  }
+
+  // The opposite of relativize, for reading manifests: paths of folders using backslashes (like
+  // a FilesystemFolder on Windows) get them back
+  static String toFolderPath(String rootPath, String relativePath) {
+    String path = relativePath.substring(1);
+    if (rootPath.endsWith("\\")) {
+      path = path.replace('/', '\\');
+    }
+    return rootPath + path;
+  }
+
+  private static class Resolution {
+    final String folderPath;
+    final String specifier;
+    final String resolvedPath;
+    final String from;
+    final int order;
+    volatile boolean fromMain;
+
+    Resolution(String folderPath, String specifier, String resolvedPath, String from, int order) {
+      this.folderPath = folderPath;
+      this.specifier = specifier;
+      this.resolvedPath = resolvedPath;
+      this.from = from;
+      this.order = order;
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.Collections;
+import java.util.List;
+import org.graalvm.polyglot.Source;
+
+// The context-independent half of a module: where it was found and what its code is. Unlike
+// Module, which holds values bound to a single context, instances can be shared between
+// contexts and threads.
+public class ModuleSource {
+  private final Folder folder;
+  private final String path;
+  private final String code;
+  private volatile CachedSource source;
+  private volatile List<String> requires;
+
+  public ModuleSource(Folder folder, String path, String code) {
+    this.folder = folder;
+    this.path = path;
+    this.code = code;
+  }
+
+  public Folder getFolder() {
+    return folder;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public String getCode() {
+    return code;
+  }
+
+  public boolean isJson() {
+    return path.toLowerCase().endsWith(".json");
+  }
+
+  // Building the wrapped source is only done once for all the contexts evaluating it through the
+  // same source cache. Contexts using another cache (or none) get their own.
+  Source getSource(SourceCache sourceCache) {
+    CachedSource result = source;
+    if (result == null || result.sourceCache != sourceCache) {
+      result =
+          new CachedSource(
+              sourceCache,
+              sourceCache != null
+                  ? sourceCache.get(path, code)
+                  : SourceCache.createSource(path, code));
+      source = result;
+    }
+    return result.source;
+  }
+
+  // The literal specifiers the code passes to require, as found by RequireScanner
+  List<String> getRequires() {
+    List<String> result = requires;
+    if (result == null) {
+      result = isJson() ? Collections.emptyList() : RequireScanner.scan(code);
+      requires = result;
+    }
+    return result;
+  }
+
+  private static class CachedSource {
+    final SourceCache sourceCache;
+    final Source source;
+
+    CachedSource(SourceCache sourceCache, Source source) {
+      this.sourceCache = sourceCache;
+      this.source = source;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Watches the directories under a filesystem root and, when a file changes, invalidates it in
+// the caches and contexts that were enabled with this watcher. Only the changed module and the
+// modules that required it are loaded again, everything else stays warm.
+//
+// It works with the paths produced by FilesystemFolder and IndexedFilesystemFolder. Every
+// directory under the root is registered with the WatchService, so this is meant for development
+// and for reasonably sized plugin trees rather than huge node_modules folders.
+public class ModuleWatcher implements Closeable {
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+  private final Thread thread;
+
+  // Everything is held weakly, so that watching doesn't keep contexts and their caches alive
+  private final Set<Module> modules = Collections.newSetFromMap(new WeakHashMap<>());
+  private final Set<ModuleCache> moduleCaches = Collections.newSetFromMap(new WeakHashMap<>());
+  private final Set<ResolutionCache> resolutionCaches =
+      Collections.newSetFromMap(new WeakHashMap<>());
+  private final Set<NegativeCache> negativeCaches = Collections.newSetFromMap(new WeakHashMap<>());
+  private final Set<PackageJsonCache> packageJsonCaches =
+      Collections.newSetFromMap(new WeakHashMap<>());
+
+  private ModuleWatcher(File root) throws IOException {
+    this.watchService = FileSystems.getDefault().newWatchService();
+    registerAll(root.getAbsoluteFile().toPath());
+    this.thread = new Thread(this::run, "module-watcher");
+    this.thread.setDaemon(true);
+  }
+
+  public static ModuleWatcher start(File root) throws IOException {
+    ModuleWatcher watcher = new ModuleWatcher(root);
+    watcher.thread.start();
+    return watcher;
+  }
+
+  // Called by Require.enable for the main module of each context using this watcher
+  synchronized void register(Module module, RequireOptions options, ModuleCache cache) {
+    modules.add(module);
+    moduleCaches.add(cache);
+    packageJsonCaches.add(module.getPackageJsonCache());
+    if (options.getResolutionCache() != null) {
+      resolutionCaches.add(options.getResolutionCache());
+    }
+    if (options.getNegativeCache() != null) {
+      negativeCaches.add(options.getNegativeCache());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    thread.interrupt();
+    watchService.close();
+  }
+
+  private void run() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        WatchKey key = watchService.take();
+        Path directory = directories.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+          if (event.kind() == OVERFLOW || directory == null) {
+            // We lost track of what changed, so we can only start over
+            invalidateAll();
+            continue;
+          }
+
+          Path changed = directory.resolve((Path) event.context());
+          if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+            directoryCreated(changed);
+          }
+          changed(changed, event.kind() != ENTRY_MODIFY);
+        }
+
+        if (!key.reset()) {
+          directories.remove(key);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException ex) {
+      // We're done
+    }
+  }
+
+  // Starts watching a directory that was just created. It may already be gone (or partly gone)
+  // by the time we get to it, in which case we can't tell what happened in it, so we start over
+  // and keep watching the rest.
+  void directoryCreated(Path directory) {
+    try {
+      registerAll(directory);
+    } catch (IOException ex) {
+      invalidateAll();
+    }
+  }
+
+  // Invalidates everything derived from the file. When files are added or removed, previous
+  // resolutions may now lead elsewhere, so they are all dropped as well.
+  void changed(Path file, boolean structural) {
+    String fullPath = file.toString();
+    String name = file.getFileName().toString();
+    String folderPath = file.getParent().toString() + File.separator;
+    String withoutExtension = folderPath + stripExtension(name);
+
+    if (name.equals("package.json")) {
+      // Changing main changes what the folder resolves to, just like adding or removing files
+      structural = true;
+      for (PackageJsonCache cache : snapshot(packageJsonCaches)) {
+        cache.invalidate(folderPath);
+      }
+    }
+
+    for (ModuleCache cache : snapshot(moduleCaches)) {
+      cache.invalidate(fullPath);
+      if (structural) {
+        // The paths this file (or folder) may have been requested through, like "./foo" for
+        // "foo.js", or "./foo" for "foo/package.json"
+        cache.invalidate(withoutExtension);
+        cache.invalidate(file.getParent().toString());
+      }
+    }
+
+    for (ResolutionCache cache : snapshot(resolutionCaches)) {
+      if (structural) {
+        cache.invalidateAll();
+      } else {
+        cache.invalidate(fullPath);
+      }
+    }
+
+    for (NegativeCache cache : snapshot(negativeCaches)) {
+      cache.invalidate(folderPath, name);
+      cache.invalidateFolder(fullPath + File.separator);
+    }
+
+    for (Module module : snapshot(modules)) {
+      module.moduleChanged(fullPath);
+    }
+  }
+
+  private void invalidateAll() {
+    for (ModuleCache cache : snapshot(moduleCaches)) {
+      cache.clear();
+    }
+    for (ResolutionCache cache : snapshot(resolutionCaches)) {
+      cache.invalidateAll();
+    }
+    for (NegativeCache cache : snapshot(negativeCaches)) {
+      cache.invalidateAll();
+    }
+    for (PackageJsonCache cache : snapshot(packageJsonCaches)) {
+      cache.invalidateAll();
+    }
+    for (Module module : snapshot(modules)) {
+      module.allModulesChanged();
+    }
+  }
+
+  private void registerAll(Path root) throws IOException {
+    Files.walkFileTree(
+        root,
+        new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+              throws IOException {
+            WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            directories.put(key, dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+
+  private synchronized <T> List<T> snapshot(Set<T> set) {
+    return new ArrayList<>(set);
+  }
+
+  private static String stripExtension(String name) {
+    int dot = name.lastIndexOf('.');
+    return dot > 0 ? name.substring(0, dot) : name;
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Remembers the files and folders that a Folder reported as missing, so that resolving a module
+// that doesn't exist (or probing the many candidates before finding one that does) doesn't hit
+// the backing storage again. Entries expire after the configured time to live, and can be
+// invalidated explicitly when files are known to have been added.
+//
+// Files and folders are remembered separately, since a folder can exist where no file of the
+// same name does (like a package in node_modules), and the other way around. The cache holds at
+// most maximumSize misses: once it is full, expired misses are swept, and if most of them are
+// still live, everything is forgotten.
+public class NegativeCache {
+  static final long DEFAULT_MAXIMUM_SIZE = 65536;
+
+  // Appended to the names of folders, which can't end with a separator
+  private static final String FOLDER_SUFFIX = "/";
+
+  private final long timeToLiveNanos;
+  private final long maximumSize;
+  private final LongSupplier ticker;
+  private final Map<String, Map<String, Long>> misses = new ConcurrentHashMap<>();
+  // Only an estimate between sweeps, which recount the misses
+  private final AtomicLong count = new AtomicLong();
+
+  public NegativeCache(long timeToLive, TimeUnit unit) {
+    this(timeToLive, unit, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  public NegativeCache(long timeToLive, TimeUnit unit, long maximumSize) {
+    this(unit.toNanos(timeToLive), maximumSize, System::nanoTime);
+  }
+
+  NegativeCache(long timeToLiveNanos, long maximumSize, LongSupplier ticker) {
+    this.timeToLiveNanos = timeToLiveNanos;
+    this.maximumSize = maximumSize;
+    this.ticker = ticker;
+  }
+
+  public boolean isMissing(String folderPath, String name) {
+    return contains(folderPath, name);
+  }
+
+  public void recordMissing(String folderPath, String name) {
+    record(folderPath, name);
+  }
+
+  public boolean isFolderMissing(String folderPath, String name) {
+    return contains(folderPath, name + FOLDER_SUFFIX);
+  }
+
+  public void recordFolderMissing(String folderPath, String name) {
+    record(folderPath, name + FOLDER_SUFFIX);
+  }
+
+  // Forgets that the file, or folder, of that name is missing
+  public void invalidate(String folderPath, String name) {
+    Map<String, Long> folder = misses.get(folderPath);
+    if (folder != null) {
+      if (folder.remove(name) != null) {
+        count.decrementAndGet();
+      }
+      if (folder.remove(name + FOLDER_SUFFIX) != null) {
+        count.decrementAndGet();
+      }
+    }
+  }
+
+  // Forgets about everything missing in the folder and all of its sub folders
+  public void invalidateFolder(String folderPath) {
+    for (Map.Entry<String, Map<String, Long>> entry : misses.entrySet()) {
+      Map<String, Long> folder = entry.getValue();
+      if (entry.getKey().startsWith(folderPath) && misses.remove(entry.getKey(), folder)) {
+        count.addAndGet(-folder.size());
+      }
+    }
+  }
+
+  public void invalidateAll() {
+    misses.clear();
+    count.set(0);
+  }
+
+  public long size() {
+    long size = 0;
+    for (Map<String, Long> folder : misses.values()) {
+      size += folder.size();
+    }
+    return size;
+  }
+
+  private boolean contains(String folderPath, String key) {
+    Map<String, Long> folder = misses.get(folderPath);
+    if (folder == null) {
+      return false;
+    }
+
+    Long expiresAt = folder.get(key);
+    if (expiresAt == null) {
+      return false;
+    }
+
+    if (ticker.getAsLong() - expiresAt > 0) {
+      if (folder.remove(key, expiresAt)) {
+        count.decrementAndGet();
+      }
+      return false;
+    }
+
+    return true;
+  }
+
+  private void record(String folderPath, String key) {
+    Long previous =
+        misses
+            .computeIfAbsent(folderPath, path -> new ConcurrentHashMap<>())
+            .put(key, ticker.getAsLong() + timeToLiveNanos);
+    if (previous == null && count.incrementAndGet() > maximumSize) {
+      sweep();
+    }
+  }
+
+  // Removes the expired misses, and the folders left without any. When that doesn't free at
+  // least half of the cache, it is cleared, so that sweeps stay rare.
+  private synchronized void sweep() {
+    if (count.get() <= maximumSize) {
+      // Another thread just swept
+      return;
+    }
+
+    long now = ticker.getAsLong();
+    long remaining = 0;
+    for (Map.Entry<String, Map<String, Long>> entry : misses.entrySet()) {
+      Map<String, Long> folder = entry.getValue();
+      folder.values().removeIf(expiresAt -> now - expiresAt > 0);
+      if (folder.isEmpty()) {
+        misses.remove(entry.getKey(), folder);
+      }
+      remaining += folder.size();
+    }
+
+    if (remaining > maximumSize / 2) {
+      invalidateAll();
+    } else {
+      count.set(remaining);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Reads whole files through a FileChannel into a buffer of the right size, or by mapping them in
+// memory when they are large, and decodes them straight into a CharBuffer. Compared to going
+// through a Reader, this skips the intermediate buffers and the growing StringBuilder.
+class NioFileReader {
+  static final long DEFAULT_MAPPING_THRESHOLD = 1024 * 1024;
+
+  // Decoders are expensive to create but not thread safe, so each thread keeps its own
+  private static final ThreadLocal<Map<Charset, CharsetDecoder>> decoders =
+      ThreadLocal.withInitial(HashMap::new);
+
+  private final Charset encoding;
+  private final long mappingThreshold;
+
+  NioFileReader(Charset encoding, long mappingThreshold) {
+    this.encoding = encoding;
+    this.mappingThreshold = mappingThreshold;
+  }
+
+  CharBuffer read(Path path) throws IOException {
+    ByteBuffer bytes;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("File too large: " + path);
+      }
+
+      if (size >= mappingThreshold) {
+        // The mapping stays valid after the channel is closed
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } else {
+        bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && channel.read(bytes) >= 0) {}
+        bytes.flip();
+      }
+    }
+
+    return decode(bytes);
+  }
+
+  private CharBuffer decode(ByteBuffer bytes) throws CharacterCodingException {
+    CharsetDecoder decoder =
+        decoders
+            .get()
+            .computeIfAbsent(
+                encoding,
+                e ->
+                    e.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    decoder.reset();
+
+    CharBuffer chars =
+        CharBuffer.allocate((int) Math.ceil(bytes.remaining() * decoder.averageCharsPerByte()));
+    while (true) {
+      CoderResult result =
+          bytes.hasRemaining() ? decoder.decode(bytes, chars, true) : CoderResult.UNDERFLOW;
+      if (result.isUnderflow()) {
+        result = decoder.flush(chars);
+      }
+
+      if (result.isUnderflow()) {
+        break;
+      }
+
+      if (result.isOverflow()) {
+        // Only happens for encodings averaging more than one char per byte, or for files that
+        // don't match their encoding, so growing is the exception
+        CharBuffer larger = CharBuffer.allocate(2 * chars.capacity() + 16);
+        chars.flip();
+        larger.put(chars);
+        chars = larger;
+      } else {
+        result.throwException();
+      }
+    }
+
+    chars.flip();
+    return chars;
+  }
+}
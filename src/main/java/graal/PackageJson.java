@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+// The fields of a package.json that matter for resolving modules, which for now is only main
+class PackageJson {
+  // Stands for folders without a package.json
+  static final PackageJson MISSING = new PackageJson(null);
+
+  private final String main;
+
+  private PackageJson(String main) {
+    this.main = main;
+  }
+
+  String getMain() {
+    return main;
+  }
+
+  // Only the top-level fields we need are built; everything else is skipped over. Throws
+  // IllegalArgumentException for invalid documents.
+  static PackageJson parse(CharSequence json) {
+    JsonParser parser = JsonParser.at(json, 0);
+    parser.skipWhitespace();
+    if (parser.peek() != '{') {
+      JsonParser.parse(json);
+      return new PackageJson(null);
+    }
+
+    String main = null;
+    parser.expect('{');
+    parser.skipWhitespace();
+    if (parser.peek() == '}') {
+      parser.expect('}');
+    } else {
+      while (true) {
+        parser.skipWhitespace();
+        if (parser.peek() != '"') {
+          throw new IllegalArgumentException(
+              "Expected a property name at position " + parser.position());
+        }
+        String name = parser.readString();
+        parser.skipWhitespace();
+        parser.expect(':');
+        if (name.equals("main")) {
+          Object value = parser.readValue();
+          main = value instanceof String ? (String) value : null;
+        } else {
+          parser.skipValue();
+        }
+        parser.skipWhitespace();
+        if (parser.peek() == ',') {
+          parser.expect(',');
+        } else {
+          parser.expect('}');
+          break;
+        }
+      }
+    }
+
+    parser.skipWhitespace();
+    if (parser.position() < json.length()) {
+      throw new IllegalArgumentException("Unexpected content at position " + parser.position());
+    }
+    return new PackageJson(main);
+  }
+}
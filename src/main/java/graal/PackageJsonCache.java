@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Keeps what was read from the package.json of each folder (including the fact that there is
+// none), so that resolving a folder module reads and parses it only once. Like the resolution
+// cache, it can be shared by every context loading from the same root folder.
+public class PackageJsonCache {
+  private final Map<String, PackageJson> packages = new ConcurrentHashMap<>();
+
+  PackageJson get(String folderPath, Supplier<PackageJson> loader) {
+    if (folderPath == null) {
+      return loader.get();
+    }
+
+    PackageJson found = packages.get(folderPath);
+    if (found == null) {
+      // Two threads may read the same file, but we don't hold any lock while reading
+      found = loader.get();
+      PackageJson previous = packages.putIfAbsent(folderPath, found);
+      if (previous != null) {
+        found = previous;
+      }
+    }
+    return found;
+  }
+
+  public void invalidate(String folderPath) {
+    packages.remove(folderPath);
+  }
+
+  public void invalidateAll() {
+    packages.clear();
+  }
+
+  public int size() {
+    return packages.size();
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Interns the paths made of a folder path and a name, which key the module cache. Once a path
+// has been built, building it again is two lookups on strings that have their hash codes cached
+// already, rather than a new string to hash; and since equal keys are the same instance, they
+// compare by reference when looked up.
+final class PathKeys {
+  static final int DEFAULT_MAXIMUM_SIZE = 65536;
+
+  private final int maximumSize;
+  private final Map<String, Map<String, String>> keys = new ConcurrentHashMap<>();
+  private final AtomicInteger size = new AtomicInteger();
+
+  PathKeys() {
+    this(DEFAULT_MAXIMUM_SIZE);
+  }
+
+  PathKeys(int maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  String join(String folderPath, String name) {
+    // Folders don't have to have a path
+    if (folderPath == null) {
+      return folderPath + name;
+    }
+
+    Map<String, String> names = keys.get(folderPath);
+    String key = names != null ? names.get(name) : null;
+    if (key != null) {
+      return key;
+    }
+
+    key = folderPath + name;
+    if (size.get() >= maximumSize) {
+      return key;
+    }
+
+    if (names == null) {
+      names = keys.computeIfAbsent(folderPath, path -> new ConcurrentHashMap<>());
+    }
+    String previous = names.putIfAbsent(name, key);
+    if (previous != null) {
+      return previous;
+    }
+    size.incrementAndGet();
+    return key;
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  void clear() {
+    keys.clear();
+    size.set(0);
+  }
+}
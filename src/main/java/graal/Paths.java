@@ -5,7 +5,38 @@
 package graal;
 
 public class Paths {
+  // Splits on slashes and backslashes like path.split("[\\\\/]") would, without going through
+  // the regex engine: empty parts are kept, except for the ones at the end.
   public static String[] splitPath(String path) {
-    return path.split("[\\\\/]");
+    int end = path.length();
+    while (end > 0 && isSeparator(path.charAt(end - 1))) {
+      end--;
+    }
+    if (end == 0) {
+      return path.isEmpty() ? new String[] {path} : new String[0];
+    }
+
+    int count = 1;
+    for (int i = 0; i < end; i++) {
+      if (isSeparator(path.charAt(i))) {
+        count++;
+      }
+    }
+
+    String[] parts = new String[count];
+    int start = 0;
+    int part = 0;
+    for (int i = 0; i < end; i++) {
+      if (isSeparator(path.charAt(i))) {
+        parts[part++] = path.substring(start, i);
+        start = i + 1;
+      }
+    }
+    parts[part] = path.substring(start, end);
+    return parts;
+  }
+
+  static boolean isSeparator(char c) {
+    return c == '/' || c == '\\';
   }
 }
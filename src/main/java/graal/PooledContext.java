@@ -0,0 +1,50 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import org.graalvm.polyglot.Context;
+
+// A context borrowed from a ContextPool, with require enabled and the modules of the pool
+// loaded. Closing it gives it back to the pool, so it's meant for try-with-resources.
+public class PooledContext implements AutoCloseable {
+  private final ContextPool pool;
+  private final Context context;
+  private final Module module;
+
+  // Only touched by the pool, under its lock
+  int uses;
+  long allocatedBytes;
+  long allocatedAtBorrow;
+  long borrowingThread;
+  boolean borrowed;
+  // Set by the borrower, without the lock
+  volatile boolean invalid;
+
+  PooledContext(ContextPool pool, Context context, Module module) {
+    this.pool = pool;
+    this.context = context;
+    this.module = module;
+  }
+
+  public Context getContext() {
+    return context;
+  }
+
+  // The main module, which require was enabled with
+  public Module getModule() {
+    return module;
+  }
+
+  // Makes the pool close the context when it's given back, rather than handing it out again.
+  // Meant for contexts left in a bad state, like after a script was cancelled.
+  public void invalidate() {
+    invalid = true;
+  }
+
+  @Override
+  public void close() {
+    pool.giveBack(this);
+  }
+}
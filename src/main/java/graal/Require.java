@@ -4,6 +4,13 @@
 
 package graal;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Value;
@@ -11,8 +18,13 @@ import org.graalvm.polyglot.Value;
 public class Require {
   // This overload registers the require function globally in the engine scope
   public static Module enable(Context context, Folder folder) throws PolyglotException {
+    return enable(context, folder, RequireOptions.create());
+  }
+
+  public static Module enable(Context context, Folder folder, RequireOptions options)
+      throws PolyglotException {
     Value global = context.getBindings("js");
-    return enable(context, folder, global);
+    return enable(context, folder, global, options);
   }
 
   // This overload registers the require function in a specific Binding. It is useful when re-using
@@ -22,17 +34,94 @@ public class Require {
   // through the binding that is passed as an argument).
   public static Module enable(Context context, Folder folder, Value bindings)
       throws PolyglotException {
+    return enable(context, folder, bindings, RequireOptions.create());
+  }
+
+  public static Module enable(
+      Context context, Folder folder, Value bindings, RequireOptions options)
+      throws PolyglotException {
     Value module = context.eval("js", "({})");
     Value exports = context.eval("js", "({})");
+    ModuleCache cache =
+        options.getModuleCache() != null ? options.getModuleCache() : new ModuleCache();
 
     Module created =
-        new Module(context, folder, new ModuleCache(), "<main>", module, exports, null, null);
+        new Module(context, folder, cache, "<main>", module, exports, null, null, options);
     created.setLoaded();
 
-    bindings.putMember("require", created);
+    if (options.getRecorder() != null) {
+      options.getRecorder().setRootPath(folder.getPath());
+    }
+
+    if (options.getWatcher() != null) {
+      options.getWatcher().register(created, options, cache);
+    }
+
+    bindings.putMember("require", created.getRequireFunction());
     bindings.putMember("module", module);
     bindings.putMember("exports", exports);
 
     return created;
   }
+
+  // Resolves and reads the given modules, and the modules they require, on a pool of threads,
+  // then requires them from the root module in the order they were given. Call it right after
+  // enable, with the modules the context will need: their folders are then read in parallel
+  // instead of one require at a time. Modules that can't be found are skipped.
+  public static void preload(Module root, List<String> specifiers, int threads)
+      throws PolyglotException {
+    preload(root, specifiers, Collections.emptyList(), threads);
+  }
+
+  public static void preload(Module root, List<String> specifiers, ExecutorService executor)
+      throws PolyglotException {
+    preload(root, specifiers, Collections.emptyList(), executor);
+  }
+
+  // Same as above, with the modules listed in a manifest file: either one specifier per line, or
+  // a manifest written by a ModuleRecorder. A recorded manifest also seeds the resolution cache,
+  // and reads ahead the modules that were required from other modules during the recorded run.
+  public static void preload(Module root, Path manifest, int threads)
+      throws IOException, PolyglotException {
+    List<String> specifiers = new ArrayList<>();
+    List<String> resolvedPaths = new ArrayList<>();
+    ModulePreloader.readManifest(root, manifest, specifiers, resolvedPaths);
+    preload(root, specifiers, resolvedPaths, threads);
+  }
+
+  private static void preload(
+      Module root, List<String> specifiers, List<String> resolvedPaths, int threads)
+      throws PolyglotException {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              Thread thread = new Thread(runnable, "module-preloader");
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      preload(root, specifiers, resolvedPaths, executor);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static void preload(
+      Module root, List<String> specifiers, List<String> resolvedPaths, ExecutorService executor)
+      throws PolyglotException {
+    List<String> found;
+    try {
+      found = ModulePreloader.load(root, specifiers, resolvedPaths, executor);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+
+    // Evaluating has to happen on the thread using the context. Each module requires its own
+    // dependencies as it runs, so they are evaluated in dependency order.
+    for (String specifier : found) {
+      root.require(specifier);
+    }
+  }
 }
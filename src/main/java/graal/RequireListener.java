@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+// Receives events for each phase of loading modules, set with RequireOptions.withListener.
+// Every method does nothing by default, so implementations only override the events they care
+// about. Durations are in nanoseconds, and are only measured when a listener other than NOOP is
+// set, so leaving the default costs nothing.
+//
+// Events fire on the thread doing the work, which isn't always the thread of the context (see
+// ModulePrefetcher and Require.preload), and a listener can be shared by several contexts: it
+// has to be thread-safe. Started events are always followed by the matching ended event on the
+// same thread, even when the phase fails.
+public interface RequireListener {
+  RequireListener NOOP = new RequireListener() {};
+
+  // The caches whose lookups are reported by cacheHit and cacheMiss
+  enum Cache {
+    // Modules already loaded in the context, by effective path
+    LOADED,
+    // Module sources (ModuleCache), by requested or effective path
+    MODULE,
+    // Resolved specifiers (ResolutionCache), by specifier
+    RESOLUTION
+  }
+
+  // Walking the folders to find the module a specifier refers to. resolvedPath is null when no
+  // module was found.
+  default void resolveStarted(String folderPath, String specifier) {}
+
+  default void resolveEnded(String folderPath, String specifier, String resolvedPath, long nanos) {}
+
+  // A file looked up in a folder while resolving, with the number of characters read when it
+  // exists. Lookups answered by the negative cache don't reach the folder and aren't reported.
+  default void fileProbed(Folder parent, String name, boolean found, int length, long nanos) {}
+
+  default void folderProbed(Folder parent, String name, boolean found, long nanos) {}
+
+  // The source of a module read into the module cache, with all the probes it took
+  default void sourceRead(String path, int length, long nanos) {}
+
+  // Evaluating the source of a module, or parsing it for JSON modules
+  default void compileStarted(String path) {}
+
+  default void compileEnded(String path, long nanos) {}
+
+  // Running the body of a module, which includes loading the modules it requires
+  default void executeStarted(String path) {}
+
+  default void executeEnded(String path, long nanos) {}
+
+  // Compiling or executing a module threw, right before the matching ended event. The module
+  // isn't loaded, and a later require will try again.
+  default void loadFailed(String path, RuntimeException exception) {}
+
+  default void cacheHit(Cache cache, String key) {}
+
+  default void cacheMiss(Cache cache, String key) {}
+
+  // A listener passing every event to each of the given ones, in order
+  static RequireListener all(RequireListener... listeners) {
+    return new RequireListeners(listeners);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+// See RequireListener.all
+class RequireListeners implements RequireListener {
+  private final RequireListener[] listeners;
+
+  RequireListeners(RequireListener[] listeners) {
+    this.listeners = listeners.clone();
+  }
+
+  @Override
+  public void resolveStarted(String folderPath, String specifier) {
+    for (RequireListener listener : listeners) {
+      listener.resolveStarted(folderPath, specifier);
+    }
+  }
+
+  @Override
+  public void resolveEnded(String folderPath, String specifier, String resolvedPath, long nanos) {
+    for (RequireListener listener : listeners) {
+      listener.resolveEnded(folderPath, specifier, resolvedPath, nanos);
+    }
+  }
+
+  @Override
+  public void fileProbed(Folder parent, String name, boolean found, int length, long nanos) {
+    for (RequireListener listener : listeners) {
+      listener.fileProbed(parent, name, found, length, nanos);
+    }
+  }
+
+  @Override
+  public void folderProbed(Folder parent, String name, boolean found, long nanos) {
+    for (RequireListener listener : listeners) {
+      listener.folderProbed(parent, name, found, nanos);
+    }
+  }
+
+  @Override
+  public void sourceRead(String path, int length, long nanos) {
+    for (RequireListener listener : listeners) {
+      listener.sourceRead(path, length, nanos);
+    }
+  }
+
+  @Override
+  public void compileStarted(String path) {
+    for (RequireListener listener : listeners) {
+      listener.compileStarted(path);
+    }
+  }
+
+  @Override
+  public void compileEnded(String path, long nanos) {
+    for (RequireListener listener : listeners) {
+      listener.compileEnded(path, nanos);
+    }
+  }
+
+  @Override
+  public void executeStarted(String path) {
+    for (RequireListener listener : listeners) {
+      listener.executeStarted(path);
+    }
+  }
+
+  @Override
+  public void executeEnded(String path, long nanos) {
+    for (RequireListener listener : listeners) {
+      listener.executeEnded(path, nanos);
+    }
+  }
+
+  @Override
+  public void loadFailed(String path, RuntimeException exception) {
+    for (RequireListener listener : listeners) {
+      listener.loadFailed(path, exception);
+    }
+  }
+
+  @Override
+  public void cacheHit(Cache cache, String key) {
+    for (RequireListener listener : listeners) {
+      listener.cacheHit(cache, key);
+    }
+  }
+
+  @Override
+  public void cacheMiss(Cache cache, String key) {
+    for (RequireListener listener : listeners) {
+      listener.cacheMiss(cache, key);
+    }
+  }
+}
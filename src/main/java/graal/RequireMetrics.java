@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// A listener adding up the events of every phase, to be scraped by a metrics system. Counters
+// only ever grow, like the ones of a ModuleCache; the maximum durations are kept since the last
+// reset.
+public class RequireMetrics implements RequireListener {
+  public enum Phase {
+    RESOLVE,
+    FILE_PROBE,
+    FOLDER_PROBE,
+    READ,
+    COMPILE,
+    EXECUTE
+  }
+
+  private final Timer[] timers = new Timer[Phase.values().length];
+  private final LongAdder fileMisses = new LongAdder();
+  private final LongAdder folderMisses = new LongAdder();
+  private final LongAdder notFound = new LongAdder();
+  private final LongAdder charsRead = new LongAdder();
+  private final LongAdder[] cacheHits = new LongAdder[Cache.values().length];
+  private final LongAdder[] cacheMisses = new LongAdder[Cache.values().length];
+
+  public RequireMetrics() {
+    for (int i = 0; i < timers.length; i++) {
+      timers[i] = new Timer();
+    }
+    for (int i = 0; i < cacheHits.length; i++) {
+      cacheHits[i] = new LongAdder();
+      cacheMisses[i] = new LongAdder();
+    }
+  }
+
+  @Override
+  public void resolveEnded(String folderPath, String specifier, String resolvedPath, long nanos) {
+    timers[Phase.RESOLVE.ordinal()].record(nanos);
+    if (resolvedPath == null) {
+      notFound.increment();
+    }
+  }
+
+  @Override
+  public void fileProbed(Folder parent, String name, boolean found, int length, long nanos) {
+    timers[Phase.FILE_PROBE.ordinal()].record(nanos);
+    if (!found) {
+      fileMisses.increment();
+    }
+  }
+
+  @Override
+  public void folderProbed(Folder parent, String name, boolean found, long nanos) {
+    timers[Phase.FOLDER_PROBE.ordinal()].record(nanos);
+    if (!found) {
+      folderMisses.increment();
+    }
+  }
+
+  @Override
+  public void sourceRead(String path, int length, long nanos) {
+    timers[Phase.READ.ordinal()].record(nanos);
+    charsRead.add(length);
+  }
+
+  @Override
+  public void compileEnded(String path, long nanos) {
+    timers[Phase.COMPILE.ordinal()].record(nanos);
+  }
+
+  @Override
+  public void executeEnded(String path, long nanos) {
+    timers[Phase.EXECUTE.ordinal()].record(nanos);
+  }
+
+  @Override
+  public void cacheHit(Cache cache, String key) {
+    cacheHits[cache.ordinal()].increment();
+  }
+
+  @Override
+  public void cacheMiss(Cache cache, String key) {
+    cacheMisses[cache.ordinal()].increment();
+  }
+
+  public long getCount(Phase phase) {
+    return timers[phase.ordinal()].count.sum();
+  }
+
+  public long getTotalNanos(Phase phase) {
+    return timers[phase.ordinal()].totalNanos.sum();
+  }
+
+  public long getMaxNanos(Phase phase) {
+    return timers[phase.ordinal()].maxNanos.get();
+  }
+
+  public long getFileMisses() {
+    return fileMisses.sum();
+  }
+
+  public long getFolderMisses() {
+    return folderMisses.sum();
+  }
+
+  // Resolutions that didn't find a module
+  public long getNotFound() {
+    return notFound.sum();
+  }
+
+  // Characters of the module sources read. The default weigher of the module cache counts two
+  // bytes for each of them.
+  public long getCharsRead() {
+    return charsRead.sum();
+  }
+
+  public long getCacheHits(Cache cache) {
+    return cacheHits[cache.ordinal()].sum();
+  }
+
+  public long getCacheMisses(Cache cache) {
+    return cacheMisses[cache.ordinal()].sum();
+  }
+
+  // Starts the maximum durations over, typically after each scrape
+  public void resetMaxNanos() {
+    for (Timer timer : timers) {
+      timer.maxNanos.reset();
+    }
+  }
+
+  // Every value under a flat name, like "resolve.count", "execute.total_nanos" or
+  // "cache.module.hits"
+  public Map<String, Long> snapshot() {
+    Map<String, Long> snapshot = new LinkedHashMap<>();
+    for (Phase phase : Phase.values()) {
+      String name = phase.name().toLowerCase(Locale.ROOT);
+      snapshot.put(name + ".count", getCount(phase));
+      snapshot.put(name + ".total_nanos", getTotalNanos(phase));
+      snapshot.put(name + ".max_nanos", getMaxNanos(phase));
+    }
+    snapshot.put("resolve.not_found", getNotFound());
+    snapshot.put("file_probe.misses", getFileMisses());
+    snapshot.put("folder_probe.misses", getFolderMisses());
+    snapshot.put("read.chars", getCharsRead());
+    for (Cache cache : Cache.values()) {
+      String name = "cache." + cache.name().toLowerCase(Locale.ROOT);
+      snapshot.put(name + ".hits", getCacheHits(cache));
+      snapshot.put(name + ".misses", getCacheMisses(cache));
+    }
+    return snapshot;
+  }
+
+  private static class Timer {
+    final LongAdder count = new LongAdder();
+    final LongAdder totalNanos = new LongAdder();
+    final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulate(nanos);
+    }
+  }
+}
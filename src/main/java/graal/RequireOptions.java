@@ -0,0 +1,198 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.concurrent.ExecutorService;
+import java.util.function.Predicate;
+import org.graalvm.polyglot.Engine;
+
+// Settings shared by every module loaded through a single call to Require.enable. Child
+// modules inherit the options of the module that required them.
+public class RequireOptions {
+  private SourceCache sourceCache;
+  private ModuleCache moduleCache;
+  private NegativeCache negativeCache;
+  private ResolutionCache resolutionCache;
+  private PackageJsonCache packageJsonCache;
+  private ModuleWatcher watcher;
+  private ModuleRecorder recorder;
+  private ModulePrefetcher prefetcher;
+  private Predicate<String> lazyRequires;
+  private int lazyJsonThreshold = -1;
+  private boolean guestRequireMemo;
+  private RequireListener listener = RequireListener.NOOP;
+  private ExecutorService asyncExecutor;
+
+  public static RequireOptions create() {
+    return new RequireOptions();
+  }
+
+  // The caches, and other shared objects, are shared with the copy
+  RequireOptions copy() {
+    RequireOptions copy = new RequireOptions();
+    copy.sourceCache = sourceCache;
+    copy.moduleCache = moduleCache;
+    copy.negativeCache = negativeCache;
+    copy.resolutionCache = resolutionCache;
+    copy.packageJsonCache = packageJsonCache;
+    copy.watcher = watcher;
+    copy.recorder = recorder;
+    copy.prefetcher = prefetcher;
+    copy.lazyRequires = lazyRequires;
+    copy.lazyJsonThreshold = lazyJsonThreshold;
+    copy.guestRequireMemo = guestRequireMemo;
+    copy.listener = listener;
+    copy.asyncExecutor = asyncExecutor;
+    return copy;
+  }
+
+  // Contexts created on the given engine will evaluate the same cached Source objects, so only
+  // the first one pays for parsing each module.
+  public RequireOptions withSharedEngine(Engine engine) {
+    return withSourceCache(SourceCache.forEngine(engine));
+  }
+
+  public RequireOptions withSourceCache(SourceCache sourceCache) {
+    this.sourceCache = sourceCache;
+    return this;
+  }
+
+  public SourceCache getSourceCache() {
+    return sourceCache;
+  }
+
+  // Passing the same cache to several contexts makes them share resolved module sources, so a
+  // module is only read once no matter how many contexts (or threads) require it. All the
+  // contexts sharing a cache must load modules from the same root folder.
+  public RequireOptions withModuleCache(ModuleCache moduleCache) {
+    this.moduleCache = moduleCache;
+    return this;
+  }
+
+  public ModuleCache getModuleCache() {
+    return moduleCache;
+  }
+
+  // Remembers the files and folders found to be missing while resolving modules, so that failed
+  // lookups (like optional dependencies) don't probe the folders over and over again.
+  public RequireOptions withNegativeCache(NegativeCache negativeCache) {
+    this.negativeCache = negativeCache;
+    return this;
+  }
+
+  public NegativeCache getNegativeCache() {
+    return negativeCache;
+  }
+
+  // Remembers which module each specifier resolved to from each folder, so that requiring it
+  // again from the same folder goes straight to the module.
+  public RequireOptions withResolutionCache(ResolutionCache resolutionCache) {
+    this.resolutionCache = resolutionCache;
+    return this;
+  }
+
+  public ResolutionCache getResolutionCache() {
+    return resolutionCache;
+  }
+
+  // Shares what was read from package.json files between contexts. Without one, each call to
+  // Require.enable gets its own.
+  public RequireOptions withPackageJsonCache(PackageJsonCache packageJsonCache) {
+    this.packageJsonCache = packageJsonCache;
+    return this;
+  }
+
+  public PackageJsonCache getPackageJsonCache() {
+    return packageJsonCache;
+  }
+
+  // Unloads modules, and invalidates the caches above, when their files change on disk
+  public RequireOptions withWatcher(ModuleWatcher watcher) {
+    this.watcher = watcher;
+    return this;
+  }
+
+  public ModuleWatcher getWatcher() {
+    return watcher;
+  }
+
+  // Records the resolutions made by require, to be written as a manifest for Require.preload
+  public RequireOptions withRecorder(ModuleRecorder recorder) {
+    this.recorder = recorder;
+    return this;
+  }
+
+  public ModuleRecorder getRecorder() {
+    return recorder;
+  }
+
+  // Reads the modules a module requires (with literal specifiers) in the background while it runs
+  public RequireOptions withPrefetcher(ModulePrefetcher prefetcher) {
+    this.prefetcher = prefetcher;
+    return this;
+  }
+
+  public ModulePrefetcher getPrefetcher() {
+    return prefetcher;
+  }
+
+  // Specifiers for which require behaves like require.lazy: the module only runs once its
+  // exports are used. Meant for large libraries that are rarely needed. Whether the exports are
+  // a function can't be known before the module runs, so the proxy standing in for them can
+  // always be called, and typeof says 'function' even for modules exporting a plain object.
+  public RequireOptions withLazyRequires(Predicate<String> lazyRequires) {
+    this.lazyRequires = lazyRequires;
+    return this;
+  }
+
+  public Predicate<String> getLazyRequires() {
+    return lazyRequires;
+  }
+
+  // JSON modules of at least this many characters are exposed as proxies which only parse the
+  // parts that are read, instead of being parsed whole with JSON.parse. Negative to disable,
+  // which is the default.
+  public RequireOptions withLazyJsonThreshold(int lazyJsonThreshold) {
+    this.lazyJsonThreshold = lazyJsonThreshold;
+    return this;
+  }
+
+  public int getLazyJsonThreshold() {
+    return lazyJsonThreshold;
+  }
+
+  // Gives each module a JavaScript require function which remembers the modules it returned,
+  // so that requiring an already loaded module doesn't call into the host at all. This has no
+  // effect when a watcher is set, since modules may then be unloaded at any time.
+  public RequireOptions withGuestRequireMemo(boolean guestRequireMemo) {
+    this.guestRequireMemo = guestRequireMemo;
+    return this;
+  }
+
+  public boolean isGuestRequireMemo() {
+    return guestRequireMemo;
+  }
+
+  // Receives events for each phase of loading modules, like RequireMetrics
+  public RequireOptions withListener(RequireListener listener) {
+    this.listener = listener != null ? listener : RequireListener.NOOP;
+    return this;
+  }
+
+  public RequireListener getListener() {
+    return listener;
+  }
+
+  // Resolves and reads the modules required with require.async. By default, a pool shared by
+  // every context, with virtual threads when the JVM has them.
+  public RequireOptions withAsyncExecutor(ExecutorService asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+    return this;
+  }
+
+  public ExecutorService getAsyncExecutor() {
+    return asyncExecutor;
+  }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Finds the require('...') calls with a literal specifier in JavaScript code. This is a lexical
+// scan, not a parser: it skips comments, strings and regular expressions so that requires
+// mentioned in them are ignored, but anything computed at runtime (like require(name)) is out
+// of its reach. Regular expressions are told apart from divisions by the token before them,
+// like most tokenizers do, which can be fooled: the scan is then incomplete.
+class RequireScanner {
+  // Words after which a slash starts a regular expression rather than a division
+  private static final List<String> KEYWORDS_BEFORE_EXPRESSION =
+      Arrays.asList(
+          "return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw", "case",
+          "do", "else", "yield", "await");
+
+  private final CharSequence code;
+  private final int length;
+  private int position;
+  private List<String> requires;
+  private int computedRequires;
+  private boolean incomplete;
+
+  private RequireScanner(CharSequence code) {
+    this.code = code;
+    this.length = code.length();
+  }
+
+  // Returns the literal specifiers in the order they appear, without duplicates
+  static List<String> scan(CharSequence code) {
+    return new RequireScanner(code).scan();
+  }
+
+  // Like scan, but keeps the scanner around to tell what it couldn't follow
+  static RequireScanner scanned(CharSequence code) {
+    RequireScanner scanner = new RequireScanner(code);
+    scanner.requires = scanner.scan();
+    return scanner;
+  }
+
+  List<String> getRequires() {
+    return requires;
+  }
+
+  // Calls to require whose specifier isn't a plain string literal, like require(name)
+  int getComputedRequires() {
+    return computedRequires;
+  }
+
+  // Whether the scan hit something it couldn't make sense of, like a string running past the
+  // end of its line, after which requires may have been missed
+  boolean isIncomplete() {
+    return incomplete;
+  }
+
+  private List<String> scan() {
+    List<String> found = new ArrayList<>();
+    while (position < length) {
+      char c = code.charAt(position);
+      if (c == '/' && peek(1) == '/') {
+        skipLineComment();
+      } else if (c == '/' && peek(1) == '*') {
+        skipBlockComment();
+      } else if (c == '/' && isRegularExpressionStart()) {
+        skipRegularExpression();
+      } else if (c == '\'' || c == '"' || c == '`') {
+        skipString(c);
+      } else if (c == 'r' && isRequireCall()) {
+        String specifier = readSpecifier();
+        if (specifier == null) {
+          computedRequires++;
+        } else if (!found.contains(specifier)) {
+          found.add(specifier);
+        }
+      } else {
+        position++;
+      }
+    }
+    return found;
+  }
+
+  private char peek(int offset) {
+    int index = position + offset;
+    return index < length ? code.charAt(index) : 0;
+  }
+
+  private void skipLineComment() {
+    while (position < length && code.charAt(position) != '\n') {
+      position++;
+    }
+  }
+
+  private void skipBlockComment() {
+    position += 2;
+    while (position < length && !(code.charAt(position) == '*' && peek(1) == '/')) {
+      position++;
+    }
+    if (position >= length) {
+      incomplete = true;
+    }
+    position += 2;
+  }
+
+  private void skipString(char quote) {
+    position++;
+    while (position < length) {
+      char c = code.charAt(position++);
+      if (c == '\\') {
+        position++;
+      } else if (c == quote) {
+        return;
+      } else if (c == '\n' && quote != '`') {
+        // Not valid JavaScript, so we must have mistaken something for the start of a string
+        incomplete = true;
+        return;
+      }
+    }
+    incomplete = true;
+  }
+
+  // Looks at the token before the slash: after a value (an identifier, a number, a closing
+  // parenthesis or bracket) it is a division, and anywhere else a regular expression
+  private boolean isRegularExpressionStart() {
+    int index = position - 1;
+    while (index >= 0 && Character.isWhitespace(code.charAt(index))) {
+      index--;
+    }
+    if (index < 0) {
+      return true;
+    }
+
+    char previous = code.charAt(index);
+    if (previous == ')' || previous == ']' || previous == '}') {
+      // A block ending before a regular expression is rare, an object literal being divided
+      // even more so, but a closing brace is usually the end of a block
+      return previous == '}';
+    }
+    if (!Character.isJavaIdentifierPart(previous)) {
+      return true;
+    }
+
+    int end = index + 1;
+    while (index >= 0 && Character.isJavaIdentifierPart(code.charAt(index))) {
+      index--;
+    }
+    return KEYWORDS_BEFORE_EXPRESSION.contains(code.subSequence(index + 1, end).toString());
+  }
+
+  private void skipRegularExpression() {
+    boolean inClass = false;
+    position++;
+    while (position < length) {
+      char c = code.charAt(position++);
+      if (c == '\\') {
+        position++;
+      } else if (c == '[') {
+        inClass = true;
+      } else if (c == ']') {
+        inClass = false;
+      } else if (c == '/' && !inClass) {
+        while (position < length && Character.isJavaIdentifierPart(code.charAt(position))) {
+          position++;
+        }
+        return;
+      } else if (c == '\n') {
+        incomplete = true;
+        return;
+      }
+    }
+    incomplete = true;
+  }
+
+  // Checks for the require identifier followed by an opening parenthesis, and moves past them
+  private boolean isRequireCall() {
+    if (position > 0) {
+      char previous = code.charAt(position - 1);
+      if (previous == '.' || Character.isJavaIdentifierPart(previous)) {
+        position++;
+        return false;
+      }
+    }
+
+    String keyword = "require";
+    if (position + keyword.length() > length
+        || !keyword.contentEquals(code.subSequence(position, position + keyword.length()))) {
+      position++;
+      return false;
+    }
+
+    position += keyword.length();
+    if (position < length && Character.isJavaIdentifierPart(code.charAt(position))) {
+      return false;
+    }
+
+    skipWhitespace();
+    if (position < length && code.charAt(position) == '(') {
+      position++;
+      return true;
+    }
+    return false;
+  }
+
+  private String readSpecifier() {
+    skipWhitespace();
+    if (position >= length) {
+      return null;
+    }
+
+    char quote = code.charAt(position);
+    if (quote != '\'' && quote != '"' && quote != '`') {
+      return null;
+    }
+
+    int start = position;
+    StringBuilder specifier = new StringBuilder();
+    position++;
+    while (position < length) {
+      char c = code.charAt(position++);
+      if (c == quote) {
+        break;
+      } else if (c == '\\' || c == '\n' || (quote == '`' && c == '$')) {
+        // Escapes and template expressions aren't worth the trouble; we just skip the string
+        position = start;
+        skipString(quote);
+        return null;
+      }
+      specifier.append(c);
+    }
+
+    skipWhitespace();
+    if (position < length && code.charAt(position) == ')') {
+      position++;
+      return specifier.toString();
+    }
+    return null;
+  }
+
+  private void skipWhitespace() {
+    while (position < length && Character.isWhitespace(code.charAt(position))) {
+      position++;
+    }
+  }
+}
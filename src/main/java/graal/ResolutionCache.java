@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Maps what was asked for (the folder of the requiring module and the specifier passed to
+// require) to the effective path of the module it resolved to. A hit lets require skip parsing
+// the specifier and walking folders altogether.
+//
+// Resolutions only depend on the folder tree, so a cache can be shared by every context loading
+// from the same root folder. They can also be exported and seeded back on startup.
+public class ResolutionCache {
+  private final Map<String, Map<String, String>> resolutions = new ConcurrentHashMap<>();
+
+  public String get(String folderPath, String specifier) {
+    Map<String, String> folder = resolutions.get(folderPath);
+    return folder != null ? folder.get(specifier) : null;
+  }
+
+  public void put(String folderPath, String specifier, String resolvedPath) {
+    resolutions
+        .computeIfAbsent(folderPath, path -> new ConcurrentHashMap<>())
+        .put(specifier, resolvedPath);
+  }
+
+  // Forgets every resolution that led to the given module path
+  public void invalidate(String resolvedPath) {
+    for (Map<String, String> folder : resolutions.values()) {
+      folder.values().removeIf(resolvedPath::equals);
+    }
+  }
+
+  public void invalidateAll() {
+    resolutions.clear();
+  }
+
+  public long size() {
+    long size = 0;
+    for (Map<String, String> folder : resolutions.values()) {
+      size += folder.size();
+    }
+    return size;
+  }
+
+  // Writes one resolution per line, as tab separated folder path, specifier and resolved path
+  public void export(Writer writer) throws IOException {
+    for (Map.Entry<String, Map<String, String>> folder : resolutions.entrySet()) {
+      for (Map.Entry<String, String> resolution : folder.getValue().entrySet()) {
+        writer.write(folder.getKey());
+        writer.write('\t');
+        writer.write(resolution.getKey());
+        writer.write('\t');
+        writer.write(resolution.getValue());
+        writer.write('\n');
+      }
+    }
+    writer.flush();
+  }
+
+  // Reads resolutions in the format written by export
+  public void seed(Reader reader) throws IOException {
+    BufferedReader lines = new BufferedReader(reader);
+    String line;
+    while ((line = lines.readLine()) != null) {
+      String[] fields = line.split("\t");
+      if (fields.length == 3) {
+        put(fields[0], fields[1], fields[2]);
+      }
+    }
+  }
+}
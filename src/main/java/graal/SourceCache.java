@@ -0,0 +1,93 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+
+// Holds the wrapped module sources so that every Context created on the same Engine evaluates
+// the very same Source instance. Truffle only shares parsed (and compiled) code between Contexts
+// when they run on a shared Engine and evaluate equal cached sources, so building a fresh string
+// for every Context throws that work away.
+public class SourceCache {
+  private static final Map<Engine, SourceCache> engineCaches = new WeakHashMap<>();
+
+  // Only the latest version of each file is kept
+  private Map<String, Entry> sources = new ConcurrentHashMap<>();
+
+  public static SourceCache forEngine(Engine engine) {
+    synchronized (engineCaches) {
+      return engineCaches.computeIfAbsent(engine, e -> new SourceCache());
+    }
+  }
+
+  public Source get(String fullPath, String code) {
+    // The content is checked so that a file changing on disk yields a new source (replacing the
+    // previous one) instead of silently reusing the code parsed for the previous version. The hash
+    // only spares comparing the text when it differs.
+    long hash = hash(code);
+    Entry entry = sources.get(fullPath);
+    if (entry != null && entry.matches(code, hash)) {
+      return entry.source;
+    }
+    return sources
+        .compute(
+            fullPath,
+            (path, current) ->
+                current != null && current.matches(code, hash)
+                    ? current
+                    : new Entry(code, hash, createSource(fullPath, code)))
+        .source;
+  }
+
+  public int size() {
+    return sources.size();
+  }
+
+  public void clear() {
+    sources.clear();
+  }
+
+  static Source createSource(String fullPath, String code) {
+    return Source.newBuilder("js", wrap(code), fullPath).cached(true).buildLiteral();
+  }
+
+  static String wrap(String code) {
+    // This mimics how Node wraps module in a function. I used to pass a 2nd parameter
+    // to eval to override global context, but it caused problems Object.create.
+    //
+    // The \n at the end is to take care of files ending with a comment
+    return "(function (exports, require, module, __filename, __dirname) {" + code + "\n})";
+  }
+
+  // 64-bit FNV-1a
+  private static long hash(String code) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < code.length(); i++) {
+      hash ^= code.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return hash;
+  }
+
+  private static class Entry {
+    final String code;
+    final long hash;
+    final Source source;
+
+    Entry(String code, long hash, Source source) {
+      this.code = code;
+      this.hash = hash;
+      this.source = source;
+    }
+
+    boolean matches(String code, long hash) {
+      return this.hash == hash && this.code.equals(code);
+    }
+  }
+}
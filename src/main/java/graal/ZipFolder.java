@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+
+// Serves modules straight from a zip (or jar) archive. The central directory is read once when
+// the archive is opened, and entries are only inflated when a module asks for them. Recently
+// read files are kept in a small cache, so that contexts loading the same modules over and over
+// don't inflate them every time.
+public class ZipFolder extends AbstractFolder implements Closeable {
+  static final long DEFAULT_CACHE_SIZE = 8 * 1024 * 1024;
+
+  private Archive archive;
+  // Path of this folder inside the archive, either empty or ending with a slash
+  private String prefix;
+
+  private ZipFolder(Archive archive, String prefix, Folder parent, String displayPath) {
+    super(parent, displayPath);
+    this.archive = archive;
+    this.prefix = prefix;
+  }
+
+  @Override
+  public String getFile(String name) {
+    return archive.read(prefix + name);
+  }
+
+  @Override
+  public Folder getFolder(String name) {
+    String path = prefix + name + "/";
+    if (!archive.directories.contains(path)) {
+      return null;
+    }
+
+    return archive.folders.computeIfAbsent(
+        path, p -> new ZipFolder(archive, p, this, getPath() + name + "/"));
+  }
+
+  // Closes the archive, for all the folders opened from it
+  @Override
+  public void close() throws IOException {
+    archive.zip.close();
+  }
+
+  public static ZipFolder open(Path path) throws IOException {
+    return open(path, "", "UTF-8");
+  }
+
+  // Opens the archive with its root at the given folder inside of it, like "node_modules"
+  public static ZipFolder open(Path path, String root, String encoding) throws IOException {
+    return open(path, root, encoding, DEFAULT_CACHE_SIZE);
+  }
+
+  // The cache holds up to cacheSize bytes of inflated content; 0 disables it
+  public static ZipFolder open(Path path, String root, String encoding, long cacheSize)
+      throws IOException {
+    Archive archive = new Archive(new ZipFile(path.toFile()), encoding, cacheSize);
+    String prefix = root.isEmpty() || root.endsWith("/") ? root : root + "/";
+    return new ZipFolder(archive, prefix, null, "/");
+  }
+
+  private static class Archive {
+    final ZipFile zip;
+    final String encoding;
+    final long cacheSize;
+    final Map<String, ZipEntry> files = new HashMap<>();
+    final Set<String> directories = new HashSet<>();
+    final Map<String, ZipFolder> folders = new ConcurrentHashMap<>();
+    final LinkedHashMap<String, String> cache = new LinkedHashMap<>(16, 0.75f, true);
+    long cachedSize;
+
+    Archive(ZipFile zip, String encoding, long cacheSize) {
+      this.zip = zip;
+      this.encoding = encoding;
+      this.cacheSize = cacheSize;
+
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        String name = entry.getName();
+        if (entry.isDirectory()) {
+          directories.add(name);
+        } else {
+          files.put(name, entry);
+        }
+
+        // Archives don't always have entries for directories, so we infer them from the files
+        for (int slash = name.indexOf('/'); slash >= 0; slash = name.indexOf('/', slash + 1)) {
+          directories.add(name.substring(0, slash + 1));
+        }
+      }
+    }
+
+    String read(String name) {
+      ZipEntry entry = files.get(name);
+      if (entry == null) {
+        return null;
+      }
+
+      synchronized (cache) {
+        String cached = cache.get(name);
+        if (cached != null) {
+          return cached;
+        }
+      }
+
+      String content;
+      try (InputStream stream = zip.getInputStream(entry)) {
+        content = IOUtils.toString(stream, encoding);
+      } catch (IOException | IllegalStateException ex) {
+        // The archive is corrupted or was closed
+        return null;
+      }
+
+      long size = 2L * content.length();
+      if (size <= cacheSize / 4) {
+        synchronized (cache) {
+          if (cache.put(name, content) == null) {
+            cachedSize += size;
+          }
+          Iterator<String> eldest = cache.values().iterator();
+          while (cachedSize > cacheSize && eldest.hasNext()) {
+            cachedSize -= 2L * eldest.next().length();
+            eldest.remove();
+          }
+        }
+      }
+
+      return content;
+    }
+  }
+}
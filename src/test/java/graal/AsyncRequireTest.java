@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.proxy.ProxyExecutable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncRequireTest {
+  private Folder root;
+  private Context context;
+  private ExecutorService executor = Executors.newSingleThreadExecutor();
+  private AtomicReference<Thread> readingThread = new AtomicReference<>();
+  private AtomicReference<Thread> executingThread = new AtomicReference<>();
+
+  @Before
+  public void before() {
+    root = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFile("a.js"))
+        .thenAnswer(
+            invocation -> {
+              readingThread.set(Thread.currentThread());
+              return "exports.value = 'a'; recordThread();";
+            });
+    when(root.getFile("broken.js")).thenReturn("throw new TypeError('broken');");
+    context = Context.create();
+    context
+        .getBindings("js")
+        .putMember(
+            "recordThread",
+            (ProxyExecutable)
+                arguments -> {
+                  executingThread.set(Thread.currentThread());
+                  return null;
+                });
+    context.eval("js", "var results = [];");
+  }
+
+  @After
+  public void after() {
+    context.close();
+    executor.shutdownNow();
+  }
+
+  private Module enable(RequireOptions options) {
+    return Require.enable(context, root, options.withAsyncExecutor(executor));
+  }
+
+  @Test
+  public void modulesAreReadInTheBackgroundAndRunOnTheContextThread() throws Throwable {
+    Module module = enable(RequireOptions.create());
+    context.eval("js", "require.async('./a').then(function(a) { results.push(a.value); })");
+    assertEquals(0, context.eval("js", "results.length").asInt());
+
+    assertTrue(module.awaitPendingRequires(5, TimeUnit.SECONDS));
+    assertEquals("a", context.eval("js", "results[0]").asString());
+    assertEquals(Thread.currentThread(), executingThread.get());
+    assertNotEquals(Thread.currentThread(), readingThread.get());
+    assertEquals(0, module.getPendingRequireCount());
+  }
+
+  @Test
+  public void failuresRejectThePromise() throws Throwable {
+    Module module = enable(RequireOptions.create());
+    context.eval(
+        "js",
+        "require.async('./missing').catch(function(e) { results.push(e.message); });"
+            + "require.async('./broken').catch(function(e) {"
+            + "  results.push(e instanceof TypeError);"
+            + "});");
+    assertTrue(module.awaitPendingRequires(5, TimeUnit.SECONDS));
+    assertEquals("Module not found: ./missing", context.eval("js", "results[0]").asString());
+    assertTrue(context.eval("js", "results[1]").asBoolean());
+  }
+
+  @Test
+  public void completionsOnlyRunWhenAskedTo() throws Throwable {
+    Module module = enable(RequireOptions.create());
+    context.eval("js", "require.async('./a').then(function(a) { results.push(a.value); })");
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+    assertEquals(1, module.getPendingRequireCount());
+    assertEquals(0, context.eval("js", "results.length").asInt());
+    assertEquals(1, module.runPendingRequires());
+    assertEquals(1, context.eval("js", "results.length").asInt());
+  }
+
+  @Test
+  public void worksWithTheGuestRequireMemo() throws Throwable {
+    Module module =
+        enable(
+            RequireOptions.create()
+                .withGuestRequireMemo(true)
+                .withResolutionCache(new ResolutionCache()));
+    context.eval("js", "require.async('./a').then(function(a) { results.push(a.value); })");
+    assertTrue(module.awaitPendingRequires(5, TimeUnit.SECONDS));
+
+    // Once loaded, the promise settles without going through the executor
+    executor.shutdown();
+    context.eval("js", "require.async('./a').then(function(a) { results.push(a.value); })");
+    assertEquals(0, module.getPendingRequireCount());
+    assertEquals("a,a", context.eval("js", "results.join()").asString());
+  }
+
+  @Test
+  public void modulesAreNotResolvedAgainOnTheContextThread() throws Throwable {
+    List<Thread> resolvingThreads = new CopyOnWriteArrayList<>();
+    RequireListener listener =
+        new RequireListener() {
+          @Override
+          public void resolveStarted(String folderPath, String specifier) {
+            resolvingThreads.add(Thread.currentThread());
+          }
+        };
+    Module module = enable(RequireOptions.create().withListener(listener));
+    context.eval("js", "require.async('./a').then(function(a) { results.push(a.value); })");
+    assertTrue(module.awaitPendingRequires(5, TimeUnit.SECONDS));
+
+    assertEquals("a", context.eval("js", "results[0]").asString());
+    assertEquals(1, resolvingThreads.size());
+    assertNotEquals(Thread.currentThread(), resolvingThreads.get(0));
+  }
+
+  @Test
+  public void loadedModulesSettleRightAwayWithoutAResolutionCache() throws Throwable {
+    Module module = enable(RequireOptions.create());
+    context.eval("js", "require.async('./a').then(function(a) { results.push(a.value); })");
+    assertTrue(module.awaitPendingRequires(5, TimeUnit.SECONDS));
+
+    executor.shutdown();
+    context.eval("js", "require.async('./a').then(function(a) { results.push(a.value); })");
+    assertEquals(0, module.getPendingRequireCount());
+    assertEquals("a,a", context.eval("js", "results.join()").asString());
+  }
+}
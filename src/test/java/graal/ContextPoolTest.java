@@ -0,0 +1,228 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.graalvm.polyglot.Context;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ContextPoolTest {
+  private Folder root;
+  private ContextPool pool;
+
+  @Before
+  public void before() {
+    root = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFile("lib.js")).thenReturn("exports.loadedAt = Date.now(); exports.value = 42;");
+  }
+
+  @After
+  public void after() {
+    if (pool != null) {
+      pool.close();
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private ContextPool create(ContextPoolOptions options) {
+    pool = ContextPool.create(root, options.withModules(Collections.singletonList("./lib")));
+    return pool;
+  }
+
+  @Test
+  public void contextsAreHandedOutWithTheModulesLoaded() throws Throwable {
+    create(ContextPoolOptions.create().withSize(2));
+    assertEquals(2, pool.stats().getIdleCount());
+
+    try (PooledContext first = pool.borrow();
+        PooledContext second = pool.borrow()) {
+      assertEquals(42, first.getContext().eval("js", "require('./lib').value").asInt());
+      assertEquals(42, second.getModule().require("./lib").getMember("value").asInt());
+      assertEquals(1.0, pool.stats().getOccupancy(), 0);
+    }
+
+    // The contexts share the module cache, so the module was only read once
+    verify(root, times(1)).getFile("lib.js");
+    assertEquals(2, pool.stats().getIdleCount());
+    assertEquals(2, pool.stats().getBorrowCount());
+  }
+
+  @Test
+  public void borrowWaitsForAContextToBeGivenBack() throws Throwable {
+    create(ContextPoolOptions.create().withSize(1));
+    PooledContext borrowed = pool.borrow();
+    assertNull(pool.borrow(10, TimeUnit.MILLISECONDS));
+
+    Thread giver =
+        new Thread(
+            () -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException ex) {
+                // Give it back right away
+              }
+              borrowed.close();
+            });
+    giver.start();
+    try (PooledContext context = pool.borrow(10, TimeUnit.SECONDS)) {
+      assertSame(borrowed, context);
+    }
+    giver.join();
+
+    ContextPoolStats stats = pool.stats();
+    assertEquals(2, stats.getWaitCount());
+    assertTrue(stats.getMaxWaitTime() >= TimeUnit.MILLISECONDS.toNanos(10));
+  }
+
+  @Test
+  public void contextsAreReplacedAfterTheirLastUse() throws Throwable {
+    create(ContextPoolOptions.create().withSize(1).withMaxUses(2));
+    Context first;
+    try (PooledContext context = pool.borrow()) {
+      first = context.getContext();
+    }
+    try (PooledContext context = pool.borrow()) {
+      assertSame(first, context.getContext());
+    }
+    try (PooledContext context = pool.borrow()) {
+      assertNotSame(first, context.getContext());
+      assertEquals(42, context.getContext().eval("js", "require('./lib').value").asInt());
+    }
+
+    assertEquals(1, pool.stats().getRecycledCount());
+    assertEquals(2, pool.stats().getCreatedCount());
+    try {
+      first.eval("js", "1");
+      fail("The context should be closed");
+    } catch (IllegalStateException ex) {
+      // Expected
+    }
+  }
+
+  @Test
+  public void borrowersWaitingForAReplacementDoNotBuildAnotherContext() throws Throwable {
+    AtomicInteger builds = new AtomicInteger();
+    create(
+        ContextPoolOptions.create()
+            .withSize(1)
+            .withMaxUses(1)
+            .withContextBuilder(
+                () -> {
+                  if (builds.incrementAndGet() == 2) {
+                    // Leaves time for the waiting borrower to grab the slot, if it were free
+                    sleep(100);
+                  }
+                  return Context.newBuilder("js");
+                }));
+    PooledContext borrowed = pool.borrow();
+
+    Thread borrower =
+        new Thread(
+            () -> {
+              try {
+                pool.borrow(10, TimeUnit.SECONDS).close();
+              } catch (InterruptedException ex) {
+                // The assertions will fail
+              }
+            });
+    borrower.start();
+    while (borrower.getState() != Thread.State.TIMED_WAITING) {
+      Thread.yield();
+    }
+    borrowed.close();
+    borrower.join();
+
+    // The context given back by the borrower was replaced in turn
+    assertEquals(3, builds.get());
+    assertEquals(2, pool.stats().getRecycledCount());
+    assertEquals(1, pool.stats().getIdleCount());
+  }
+
+  @Test
+  public void allocationsAreOnlyMeasuredOnTheBorrowingThread() throws Throwable {
+    create(ContextPoolOptions.create().withSize(1).withMaxAllocatedBytes(1));
+    PooledContext borrowed = pool.borrow();
+    Thread giver = new Thread(borrowed::close);
+    giver.start();
+    giver.join();
+    assertEquals(0, pool.stats().getRecycledCount());
+  }
+
+  @Test
+  public void theRequireOptionsOfTheCallerAreLeftAlone() throws Throwable {
+    RequireOptions requireOptions = RequireOptions.create();
+    create(ContextPoolOptions.create().withSize(1).withRequireOptions(requireOptions));
+    assertNull(requireOptions.getModuleCache());
+    assertNull(requireOptions.getSourceCache());
+  }
+
+  @Test
+  public void invalidatedContextsAreReplaced() throws Throwable {
+    create(ContextPoolOptions.create().withSize(1));
+    Context first;
+    try (PooledContext context = pool.borrow()) {
+      first = context.getContext();
+      context.invalidate();
+    }
+    try (PooledContext context = pool.borrow()) {
+      assertNotSame(first, context.getContext());
+    }
+  }
+
+  @Test
+  public void contextsAreReplacedAfterAllocatingTooMuch() throws Throwable {
+    create(ContextPoolOptions.create().withSize(1).withMaxAllocatedBytes(1));
+    try (PooledContext context = pool.borrow()) {
+      context.getContext().eval("js", "var a = []; for (var i = 0; i < 1000; i++) a.push({i: i});");
+    }
+    assertEquals(1, pool.stats().getRecycledCount());
+  }
+
+  @Test
+  public void closingThePoolClosesItsContexts() throws Throwable {
+    create(ContextPoolOptions.create().withSize(2));
+    PooledContext borrowed = pool.borrow();
+    pool.close();
+
+    try {
+      pool.borrow();
+      fail("The pool should be closed");
+    } catch (IllegalStateException ex) {
+      // Expected
+    }
+
+    borrowed.getContext().eval("js", "1");
+    borrowed.close();
+    try {
+      borrowed.getContext().eval("js", "1");
+      fail("The context should be closed");
+    } catch (IllegalStateException ex) {
+      // Expected
+    }
+  }
+}
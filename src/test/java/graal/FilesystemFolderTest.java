@@ -68,4 +68,29 @@ public class FilesystemFolderTest {
     Require.enable(context, root);
     assertEquals("spam", context.eval("js", "require('./foo').bar.spam.spam").asString());
   }
+
+  @Test
+  public void nioModeReadsTheSameContent() {
+    FilesystemFolder nio = FilesystemFolder.create(file, "UTF-8", FilesystemFolder.ReadMode.NIO);
+    assertEquals(root.getFile("foo.js"), nio.getFile("foo.js"));
+    assertEquals(root.getFile("foo.js"), nio.getFileContent("foo.js").toString());
+    assertNull(nio.getFile("invalid"));
+    assertNull(nio.getFile("subdir"));
+    assertEquals(
+        root.getFolder("subdir").getFile("bar.js"), nio.getFolder("subdir").getFile("bar.js"));
+  }
+
+  @Test
+  public void nioModeCanMapFilesInMemory() {
+    FilesystemFolder mapped =
+        FilesystemFolder.create(file, "UTF-8", FilesystemFolder.ReadMode.NIO, 0);
+    assertEquals(root.getFile("foo.js"), mapped.getFile("foo.js"));
+  }
+
+  @Test
+  public void nioModeWorksWhenUsedForReal() throws Throwable {
+    Context context = Context.create();
+    Require.enable(context, FilesystemFolder.create(file, "UTF-8", FilesystemFolder.ReadMode.NIO));
+    assertEquals("spam", context.eval("js", "require('./foo').bar.spam.spam").asString());
+  }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import org.graalvm.polyglot.Context;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GuestRequireMemoTest {
+  private Folder root;
+  private Context context;
+
+  @Before
+  public void before() {
+    root = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFile("a.js")).thenReturn("exports.value = 'a';");
+    when(root.getFile("b.js"))
+        .thenReturn("exports.get = function() { return require('./a').value; };");
+    when(root.getFile("data.json")).thenReturn("{ \"value\": 1 }");
+    context = Context.create();
+  }
+
+  @After
+  public void after() {
+    context.close();
+  }
+
+  @Test
+  public void warmRequiresDontCallIntoTheHost() throws Throwable {
+    Require.enable(context, root, RequireOptions.create().withGuestRequireMemo(true));
+    assertEquals("a", context.eval("js", "require('./b').get()").asString());
+    assertEquals(1, context.eval("js", "require('./data.json').value").asInt());
+
+    clearInvocations(root);
+    assertEquals(
+        "a",
+        context
+            .eval("js", "var b = require('./b'); for (var i = 0; i < 100; i++) b.get(); b.get()")
+            .asString());
+    assertEquals(1, context.eval("js", "require('./data.json').value").asInt());
+    verifyZeroInteractions(root);
+  }
+
+  @Test
+  public void replacedExportsAndCircularRequiresWork() throws Throwable {
+    when(root.getFile("c.js"))
+        .thenReturn("exports.early = require('./d').seen; module.exports = { late: true };");
+    when(root.getFile("d.js")).thenReturn("exports.seen = require('./c').late === undefined;");
+    Require.enable(context, root, RequireOptions.create().withGuestRequireMemo(true));
+
+    assertTrue(context.eval("js", "require('./c').late").asBoolean());
+    assertTrue(context.eval("js", "require('./d').seen").asBoolean());
+    assertTrue(context.eval("js", "require('./c') === require('./c')").asBoolean());
+    assertTrue(context.eval("js", "require.main === module").asBoolean());
+  }
+
+  @Test
+  public void lazySpecifiersStillGoThroughTheHost() throws Throwable {
+    Require.enable(
+        context,
+        root,
+        RequireOptions.create()
+            .withGuestRequireMemo(true)
+            .withLazyRequires(specifier -> specifier.equals("./a")));
+    assertEquals("a", context.eval("js", "require('./a').value").asString());
+    assertEquals("a", context.eval("js", "require.lazy('./b').get()").asString());
+  }
+}
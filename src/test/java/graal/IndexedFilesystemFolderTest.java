@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import org.graalvm.polyglot.Context;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexedFilesystemFolderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File file = new File("src/test/resources/graal/test1");
+  private IndexedFilesystemFolder root = IndexedFilesystemFolder.create(file, "UTF-8");
+
+  private File subfile = new File(file, "subdir");
+
+  @Test
+  public void rootFolderHasTheExpectedProperties() {
+    assertTrue(root.getPath().endsWith(file.getPath() + File.separator));
+    assertNull(root.getParent());
+  }
+
+  @Test
+  public void getFileReturnsTheContentOfTheFileWhenItExists() {
+    assertTrue(root.getFile("foo.js").contains("foo"));
+  }
+
+  @Test
+  public void getFileReturnsNullWhenFileDoesNotExists() {
+    assertNull(root.getFile("invalid"));
+  }
+
+  @Test
+  public void getFileReturnsNullForFolders() {
+    assertNull(root.getFile("subdir"));
+  }
+
+  @Test
+  public void getFolderReturnsTheSameObjectEachTime() {
+    Folder sub = root.getFolder("subdir");
+    assertTrue(sub.getPath().endsWith(subfile.getPath() + File.separator));
+    assertSame(root, sub.getParent());
+    assertSame(sub, root.getFolder("subdir"));
+  }
+
+  @Test
+  public void getFolderReturnsNullWhenFolderDoesNotExist() {
+    assertNull(root.getFolder("invalid"));
+    assertNull(root.getFolder("foo.js"));
+  }
+
+  @Test
+  public void newFilesAreFoundOnceTheDirectoryChanges() throws Throwable {
+    File directory = temporaryFolder.newFolder("modules");
+    IndexedFilesystemFolder folder =
+        IndexedFilesystemFolder.create(directory, "UTF-8", 0, TimeUnit.NANOSECONDS);
+    assertNull(folder.getFile("foo.js"));
+    assertNull(folder.getFolder("lib"));
+
+    Files.write(new File(directory, "foo.js").toPath(), "foo".getBytes(StandardCharsets.UTF_8));
+    new File(directory, "lib").mkdir();
+    // Make sure the change is visible even on filesystems with a coarse timestamp resolution
+    Files.setLastModifiedTime(
+        directory.toPath(), FileTime.fromMillis(System.currentTimeMillis() + 10000));
+
+    assertEquals("foo", folder.getFile("foo.js"));
+    assertNotNull(folder.getFolder("lib"));
+  }
+
+  @Test
+  public void indexedFilesystemFolderWorksWhenUsedForReal() throws Throwable {
+    Context context = Context.create();
+    Require.enable(context, root);
+    assertEquals("spam", context.eval("js", "require('./foo').bar.spam.spam").asString());
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.graalvm.polyglot.Context;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexedResourceFolderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private IndexedResourceFolder root;
+
+  public IndexedResourceFolderTest() throws Exception {
+    root = IndexedResourceFolder.create(getClass().getClassLoader(), "graal/test1", "UTF-8");
+  }
+
+  @Test
+  public void rootFolderHasTheExpectedProperties() {
+    assertEquals("/", root.getPath());
+    assertNull(root.getParent());
+  }
+
+  @Test
+  public void getFileReturnsTheContentOfTheFileWhenItExists() {
+    assertTrue(root.getFile("foo.js").contains("foo"));
+  }
+
+  @Test
+  public void getFileReturnsNullWhenFileDoesNotExists() {
+    assertNull(root.getFile("invalid"));
+    assertNull(root.getFile("subdir"));
+  }
+
+  @Test
+  public void getFolderReturnsAnObjectWithTheExpectedProperties() {
+    Folder sub = root.getFolder("subdir");
+    assertEquals("/subdir/", sub.getPath());
+    assertSame(root, sub.getParent());
+    assertSame(sub, root.getFolder("subdir"));
+    Folder subsub = sub.getFolder("subsubdir");
+    assertEquals("/subdir/subsubdir/", subsub.getPath());
+    assertSame(sub, subsub.getParent());
+  }
+
+  @Test
+  public void getFolderReturnsNullWhenFolderDoesNotExist() {
+    assertNull(root.getFolder("invalid"));
+    assertNull(root.getFolder("foo.js"));
+  }
+
+  @Test
+  public void resourcesCanBeIndexedFromJars() throws Throwable {
+    File jar = temporaryFolder.newFile("modules.jar");
+    try (JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar))) {
+      stream.putNextEntry(new JarEntry("modules/"));
+      stream.putNextEntry(new JarEntry("modules/lib/"));
+      stream.putNextEntry(new JarEntry("modules/lib/foo.js"));
+      stream.write("exports.foo = 'foo';".getBytes(StandardCharsets.UTF_8));
+      stream.closeEntry();
+    }
+
+    try (URLClassLoader loader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, null)) {
+      IndexedResourceFolder modules = IndexedResourceFolder.create(loader, "modules", "UTF-8");
+      assertNull(modules.getFile("foo.js"));
+      assertNull(modules.getFolder("invalid"));
+      assertEquals("exports.foo = 'foo';", modules.getFolder("lib").getFile("foo.js"));
+    }
+  }
+
+  @Test
+  public void indexedResourceFolderWorksWhenUsedForReal() throws Throwable {
+    Context context = Context.create();
+    Require.enable(context, root);
+    assertEquals("spam", context.eval("js", "require('./foo').bar.spam.spam").asString());
+  }
+}
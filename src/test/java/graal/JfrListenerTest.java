@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.graalvm.polyglot.Context;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JfrListenerTest {
+  private Folder root;
+  private Context context;
+  private Path file;
+
+  @Before
+  public void before() throws IOException {
+    Assume.assumeTrue(FlightRecorder.isAvailable());
+    root = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFile("a.js")).thenReturn("exports.b = require('./b');");
+    when(root.getFile("b.js")).thenReturn("exports.value = 1;");
+    when(root.getFile("c.json")).thenReturn("{}");
+    context = Context.create();
+    file = Files.createTempFile("require", ".jfr");
+  }
+
+  @After
+  public void after() throws IOException {
+    if (context != null) {
+      context.close();
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void modulesLoadsAreRecorded() throws Throwable {
+    List<RecordedEvent> events =
+        record(
+            "graal.commonjs.ModuleLoad",
+            RequireOptions.create().withResolutionCache(new ResolutionCache()),
+            "require('./a'); require('./a'); require('./c.json')");
+
+    Map<String, RecordedEvent> loads = new HashMap<>();
+    for (RecordedEvent event : events) {
+      loads.put(event.getString("path"), event);
+    }
+    assertEquals(3, loads.size());
+
+    RecordedEvent a = loads.get("/a.js");
+    assertEquals("./a", a.getString("specifier"));
+    assertEquals("exports.b = require('./b');".length(), a.getLong("charsRead"));
+    assertEquals(2, a.getInt("probes"));
+    assertFalse(a.getBoolean("resolutionCached"));
+    assertFalse(a.getBoolean("sourceCached"));
+    assertEquals(root.getClass().getSimpleName(), a.getString("folderType"));
+    assertTrue(
+        a.getDuration("executeDuration").compareTo(loads.get("/b.js").getDuration("duration"))
+            >= 0);
+
+    assertEquals("./b", loads.get("/b.js").getString("specifier"));
+    assertEquals("./c.json", loads.get("/c.json").getString("specifier"));
+  }
+
+  @Test
+  public void folderProbesAreRecorded() throws Throwable {
+    List<RecordedEvent> events =
+        record("graal.commonjs.FolderProbe", RequireOptions.create(), "require('./b')");
+
+    assertEquals(2, events.size());
+    assertEquals("b", events.get(0).getString("name"));
+    assertFalse(events.get(0).getBoolean("found"));
+    assertEquals("b.js", events.get(1).getString("name"));
+    assertTrue(events.get(1).getBoolean("found"));
+    assertEquals("/", events.get(1).getString("folder"));
+  }
+
+  private List<RecordedEvent> record(String eventName, RequireOptions options, String script)
+      throws IOException {
+    try (Recording recording = new Recording()) {
+      recording.enable(eventName);
+      recording.start();
+      Require.enable(context, root, options.withListener(new JfrListener()));
+      context.eval("js", script);
+      recording.stop();
+      recording.dump(file);
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    events.removeIf(event -> !event.getEventType().getName().equals(eventName));
+    events.sort((e1, e2) -> e1.getStartTime().compareTo(e2.getStartTime()));
+    return events;
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class JsonParserTest {
+  @Test
+  public void valuesAreParsedToJavaObjects() {
+    Map<String, Object> expected = new LinkedHashMap<>();
+    expected.put("main", "lib/é\"x\".js");
+    expected.put("version", 1.5);
+    expected.put("private", true);
+    expected.put("files", Arrays.asList("a", null, -2e3));
+    expected.put("nested", Collections.singletonMap("empty", Collections.emptyMap()));
+
+    assertEquals(
+        expected,
+        JsonParser.parse(
+            " {\"main\": \"lib/\\u00e9\\\"x\\\".js\", \"version\": 1.5, \"private\": true,\n"
+                + "\"files\": [\"a\", null, -2e3], \"nested\": {\"empty\": {}}} "));
+  }
+
+  @Test
+  public void scalarsCanBeParsedOnTheirOwn() {
+    assertEquals("a", JsonParser.parse("\"a\""));
+    assertEquals(false, JsonParser.parse("false"));
+    assertNull(JsonParser.parse("null"));
+    assertEquals(Collections.emptyList(), JsonParser.parse("[ ]"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void trailingCommasAreRejected() {
+    JsonParser.parse("{\"a\": 1,}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void trailingContentIsRejected() {
+    JsonParser.parse("{} {}");
+  }
+
+  @Test
+  public void numbersFollowTheJsonGrammar() {
+    assertEquals(-0.5e-3, JsonParser.parse("-0.5E-3"));
+    for (String invalid : Arrays.asList("+1", "01", "1.", ".5", "-", "1e", "0x10")) {
+      try {
+        JsonParser.parse(invalid);
+        fail("should reject " + invalid);
+      } catch (IllegalArgumentException expected) {
+      }
+      try {
+        LazyJson.parse("[" + invalid + "]");
+        fail("should reject " + invalid);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidEscapesAreRejectedWhenSkipped() {
+    LazyJson.parse("{\"a\": \"\\x\"}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unterminatedStringsAreRejected() {
+    JsonParser.parse("\"abc");
+  }
+}
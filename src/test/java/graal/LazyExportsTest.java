@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LazyExportsTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+  private Context context;
+
+  @Before
+  public void before() throws Throwable {
+    root = temporaryFolder.getRoot();
+    write(
+        "big.js",
+        "runs++; exports.name = 'big';\n"
+            + "exports.hello = function() { return 'hello ' + this.name; };");
+    write("fn.js", "runs++; module.exports = function(a, b) { return a + b; };");
+    context = Context.create();
+    context.eval("js", "var runs = 0;");
+  }
+
+  @After
+  public void after() {
+    context.close();
+  }
+
+  @Test
+  public void lazyModulesRunWhenTheirExportsAreFirstUsed() throws Throwable {
+    Require.enable(context, FilesystemFolder.create(root, "UTF-8"));
+    context.eval("js", "var big = require.lazy('./big');");
+    assertEquals(0, context.eval("js", "runs").asInt());
+
+    assertEquals("hello big", context.eval("js", "big.hello()").asString());
+    assertEquals("big", context.eval("js", "big.name").asString());
+    assertTrue(context.eval("js", "Object.keys(big).indexOf('hello') >= 0").asBoolean());
+    assertEquals(1, context.eval("js", "runs").asInt());
+
+    // Now that it ran, it's the same module as any other
+    assertTrue(context.eval("js", "require('./big') === require.lazy('./big')").asBoolean());
+    assertEquals(1, context.eval("js", "runs").asInt());
+  }
+
+  @Test
+  public void lazyModulesExportingFunctionsCanBeCalled() throws Throwable {
+    Require.enable(context, FilesystemFolder.create(root, "UTF-8"));
+    assertEquals(3, context.eval("js", "require.lazy('./fn')(1, 2)").asInt());
+    // Even for plain objects, as the proxy can't know before the module runs
+    assertEquals("function", context.eval("js", "typeof require.lazy('./big')").asString());
+  }
+
+  @Test(expected = PolyglotException.class)
+  public void missingLazyModulesFailRightAway() throws Throwable {
+    Require.enable(context, FilesystemFolder.create(root, "UTF-8"));
+    context.eval("js", "require.lazy('./invalid')");
+  }
+
+  @Test
+  public void requireCanBeMadeLazyForSomeSpecifiers() throws Throwable {
+    Require.enable(
+        context,
+        FilesystemFolder.create(root, "UTF-8"),
+        RequireOptions.create().withLazyRequires(specifier -> specifier.equals("./big")));
+    context.eval("js", "var big = require('./big'); var fn = require('./fn');");
+    assertEquals(1, context.eval("js", "runs").asInt());
+    assertEquals("big", context.eval("js", "big.name").asString());
+    assertEquals(2, context.eval("js", "runs").asInt());
+  }
+
+  private void write(String name, String code) throws Throwable {
+    Files.write(new File(root, name).toPath(), code.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LazyJsonTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+  private Context context;
+
+  @Before
+  public void before() throws Throwable {
+    root = temporaryFolder.getRoot();
+    write(
+        "data.json",
+        "{ \"name\": \"data\", \"escaped\": \"a\\\"]}\\u00e9\",\n"
+            + "  \"rows\": [ { \"id\": 1, \"tags\": [\"x\", \"y\"] },\n"
+            + "    { \"id\": 2, \"tags\": [] } ],\n"
+            + "  \"nested\": { \"flag\": true, \"none\": null, \"empty\": {} } }");
+    write("small.json", "{ \"a\": 1 }");
+    write("broken.json", "{ \"a\": [1, 2 }");
+    write("invalid.json", "{ \"a\": { \"b\": [1, +2] }, \"c\": \"long enough\" }");
+    context = Context.create();
+    Require.enable(
+        context,
+        FilesystemFolder.create(root, "UTF-8"),
+        RequireOptions.create().withLazyJsonThreshold(20));
+  }
+
+  @After
+  public void after() {
+    context.close();
+  }
+
+  @Test
+  public void membersAreReadFromTheDocument() throws Throwable {
+    context.eval("js", "var data = require('./data.json');");
+    assertEquals("data", context.eval("js", "data.name").asString());
+    assertEquals("a\"]}é", context.eval("js", "data.escaped").asString());
+    assertEquals(2, context.eval("js", "data.rows.length").asInt());
+    assertEquals(2, context.eval("js", "data.rows[1].id").asInt());
+    assertEquals("y", context.eval("js", "data.rows[0].tags[1]").asString());
+    assertEquals(0, context.eval("js", "data.rows[1].tags.length").asInt());
+    assertTrue(context.eval("js", "data.nested.flag").asBoolean());
+    assertTrue(context.eval("js", "data.nested.none === null").asBoolean());
+    assertEquals(
+        "name,escaped,rows,nested", context.eval("js", "Object.keys(data).join()").asString());
+  }
+
+  @Test
+  public void valuesCanBeWritten() throws Throwable {
+    context.eval("js", "var data = require('./data.json');");
+    context.eval("js", "data.rows[0].id = 5; data.extra = 'x'; data.nested.flag = false;");
+    assertEquals(5, context.eval("js", "require('./data.json').rows[0].id").asInt());
+    assertEquals("x", context.eval("js", "data.extra").asString());
+    assertTrue(context.eval("js", "data.nested.flag === false").asBoolean());
+  }
+
+  @Test
+  public void smallDocumentsAreStillParsedWhole() throws Throwable {
+    assertEquals(
+        "{\"a\":1}", context.eval("js", "JSON.stringify(require('./small.json'))").asString());
+  }
+
+  @Test(expected = PolyglotException.class)
+  public void unbalancedDocumentsFailWhenRequired() throws Throwable {
+    context.eval("js", "require('./broken.json')");
+  }
+
+  // Like JSON.parse, rather than when the invalid value is read
+  @Test(expected = PolyglotException.class)
+  public void invalidValuesFailWhenRequired() throws Throwable {
+    context.eval("js", "require('./invalid.json')");
+  }
+
+  private void write(String name, String code) throws Throwable {
+    Files.write(new File(root, name).toPath(), code.getBytes(StandardCharsets.UTF_8));
+  }
+}
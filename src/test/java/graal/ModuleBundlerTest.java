@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.graalvm.polyglot.Context;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModuleBundlerTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+  private Path bundle;
+
+  @Before
+  public void before() throws Throwable {
+    Module.resetThreadState();
+    root = temporaryFolder.newFolder("root");
+    write("index.js", "exports.value = require('./lib').value + require('dep').value;");
+    write("lib/index.js", "exports.value = require('../data.json').value;");
+    write("data.json", "{ \"value\": 1 }");
+    write("node_modules/dep/package.json", "{ \"main\": \"main.js\" }");
+    write(
+        "node_modules/dep/main.js",
+        "try { require('optional'); } catch (ex) {}\nexports.value = 2;");
+    write("unused.js", "exports.value = 3;");
+    bundle = temporaryFolder.getRoot().toPath().resolve("modules.bundle");
+  }
+
+  @Test
+  public void bundleContainsTheModulesReachableFromTheEntryPoints() throws Throwable {
+    ModuleBundler.bundle(
+        FilesystemFolder.create(root, "UTF-8"), Collections.singletonList("./index"), bundle);
+
+    BundleFolder folder = BundleFolder.open(bundle);
+    assertEquals("/", folder.getPath());
+    assertTrue(folder.getFile("index.js").contains("require('./lib')"));
+    assertEquals("{ \"value\": 1 }", folder.getFile("data.json"));
+    assertEquals("/node_modules/dep/", folder.getFolder("node_modules").getFolder("dep").getPath());
+    assertNull(folder.getFile("unused.js"));
+    assertNull(folder.getFolder("invalid"));
+
+    ResolutionCache resolutions = folder.getResolutionCache();
+    assertEquals("/index.js", resolutions.get("/", "./index"));
+    assertEquals("/lib/index.js", resolutions.get("/", "./lib"));
+    assertEquals("/node_modules/dep/main.js", resolutions.get("/", "dep"));
+    assertEquals("/data.json", resolutions.get("/lib/", "../data.json"));
+    assertNull(resolutions.get("/node_modules/dep/", "optional"));
+  }
+
+  @Test
+  public void eachResolutionIsBundledOnce() throws Throwable {
+    write("other.js", "exports.value = require('./lib').value + require('dep').value;");
+    ModuleBundler.bundle(
+        FilesystemFolder.create(root, "UTF-8"),
+        Arrays.asList("./index", "./other", "./index"),
+        bundle);
+
+    BundleFolder folder = BundleFolder.open(bundle);
+    assertEquals(5, folder.getResolutionCount());
+    assertEquals(5, folder.getResolutionCache().size());
+  }
+
+  @Test
+  public void bundledModulesCanBeRequiredWithoutProbingFolders() throws Throwable {
+    ModuleBundler.bundle(
+        FilesystemFolder.create(root, "UTF-8"), Arrays.asList("./index", "./unused"), bundle);
+
+    BundleFolder folder = BundleFolder.open(bundle);
+    Context context = Context.create();
+    Require.enable(
+        context,
+        folder,
+        RequireOptions.create().withResolutionCache(folder.getResolutionCache()));
+    assertEquals(3, context.eval("js", "require('./index').value").asInt());
+    assertEquals(3, context.eval("js", "require('./unused').value").asInt());
+  }
+
+  @Test
+  public void folderModulesResolveLikeTheOriginalTreeWithoutTheResolutionTable()
+      throws Throwable {
+    ModuleBundler.bundle(
+        FilesystemFolder.create(root, "UTF-8"), Collections.singletonList("./index"), bundle);
+
+    BundleFolder folder = BundleFolder.open(bundle);
+    assertEquals(
+        "{ \"main\": \"main.js\" }",
+        folder.getFolder("node_modules").getFolder("dep").getFile("package.json"));
+
+    Context context = Context.create();
+    Require.enable(context, folder);
+    assertEquals(2, context.eval("js", "require('dep').value").asInt());
+  }
+
+  @Test
+  public void requiresThatCannotBeFollowedAreReported() throws Throwable {
+    write("dynamic.js", "var re = /'/; require('./lib'); require(process.env.PLUGIN);");
+    List<String> warnings =
+        ModuleBundler.bundle(
+            FilesystemFolder.create(root, "UTF-8"),
+            Arrays.asList("./index", "./dynamic"),
+            bundle);
+
+    assertEquals(
+        Collections.singletonList(
+            "/dynamic.js: 1 require call(s) with a computed specifier; list the modules they"
+                + " load as entry points"),
+        warnings);
+    assertEquals("/lib/index.js", BundleFolder.open(bundle).getResolutionCache().get("/", "./lib"));
+  }
+
+  @Test(expected = IOException.class)
+  public void missingEntryPointsAreReported() throws Throwable {
+    ModuleBundler.bundle(
+        FilesystemFolder.create(root, "UTF-8"), Collections.singletonList("./invalid"), bundle);
+  }
+
+  @Test(expected = IOException.class)
+  public void openingSomethingElseThanABundleFails() throws Throwable {
+    BundleFolder.open(new File(root, "index.js").toPath());
+  }
+
+  private void write(String name, String code) throws Throwable {
+    File file = new File(root, name);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.graalvm.polyglot.Context;
+import org.junit.Test;
+
+public class ModuleCacheTest {
+  private Folder folder = mock(Folder.class);
+  private ModuleCache cache = new ModuleCache();
+
+  @Test
+  public void concurrentLoadsOfTheSamePathOnlyRunTheLoaderOnce() throws Throwable {
+    ModuleSource source = new ModuleSource(folder, "/file1.js", "exports.file1 = 'file1';");
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<ModuleSource>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(
+            executor.submit(
+                () ->
+                    cache.load(
+                        "/file1",
+                        () -> {
+                          calls.incrementAndGet();
+                          try {
+                            release.await(5, TimeUnit.SECONDS);
+                          } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                          }
+                          return source;
+                        })));
+      }
+
+      Thread.sleep(100);
+      release.countDown();
+
+      for (Future<ModuleSource> result : results) {
+        assertSame(source, result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(1, calls.get());
+    assertSame(source, cache.get("/file1"));
+    assertSame(source, cache.get("/file1.js"));
+  }
+
+  @Test
+  public void failedLookupsAreNotCached() {
+    assertNull(cache.load("/invalid", () -> null));
+    assertNull(cache.get("/invalid"));
+  }
+
+  @Test
+  public void loaderExceptionsAreRethrownAndNotCached() {
+    try {
+      cache.load(
+          "/file1",
+          () -> {
+            throw new IllegalStateException("boom");
+          });
+      fail("should throw exception");
+    } catch (IllegalStateException ex) {
+      assertEquals("boom", ex.getMessage());
+    }
+    assertNull(cache.get("/file1"));
+  }
+
+  @Test
+  public void contextsSharingACacheReadModulesOnceButKeepTheirOwnExports() throws Throwable {
+    when(folder.getPath()).thenReturn("/");
+    when(folder.getFile("file1.js")).thenReturn("exports.file1 = Math.random();");
+    RequireOptions options = RequireOptions.create().withModuleCache(cache);
+
+    try (Context first = Context.create();
+        Context second = Context.create()) {
+      Require.enable(first, folder, options);
+      Require.enable(second, folder, options);
+      first.eval("js", "require('./file1.js').file1 = 'first'");
+      second.eval("js", "require('./file1.js').file1 = 'second'");
+      assertEquals("first", first.eval("js", "require('./file1.js').file1").asString());
+      assertEquals("second", second.eval("js", "require('./file1.js').file1").asString());
+    }
+
+    verify(folder, times(1)).getFile("file1.js");
+  }
+
+  @Test
+  public void leastRecentlyUsedSourcesAreEvictedWhenTheCacheIsFull() {
+    AtomicLong time = new AtomicLong();
+    ModuleCache cache =
+        new ModuleCache(ModuleCachePolicy.unbounded().maximumEntries(2).ticker(time::get));
+
+    cache.put("/file1", source("/file1.js", "1"));
+    time.incrementAndGet();
+    cache.put("/file2", source("/file2.js", "2"));
+    time.incrementAndGet();
+    assertNotNull(cache.get("/file1"));
+    time.incrementAndGet();
+    cache.put("/file3", source("/file3.js", "3"));
+
+    assertNotNull(cache.get("/file1"));
+    assertNull(cache.get("/file2"));
+    assertNull(cache.get("/file2.js"));
+    assertNotNull(cache.get("/file3.js"));
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.stats().getEvictionCount());
+  }
+
+  @Test
+  public void sourcesAreEvictedWhenTheirWeightExceedsTheMaximum() {
+    ModuleCache cache = new ModuleCache(ModuleCachePolicy.unbounded().maximumWeight(20));
+
+    cache.put("/file1.js", source("/file1.js", "12345"));
+    assertEquals(10, cache.weight());
+    cache.put("/file2.js", source("/file2.js", "12345"));
+    cache.put("/file3.js", source("/file3.js", "12345"));
+
+    assertEquals(2, cache.size());
+    assertEquals(20, cache.weight());
+  }
+
+  @Test
+  public void aliasesDoNotCountAgainstTheMaximumNumberOfEntries() {
+    ModuleCache cache = new ModuleCache(ModuleCachePolicy.unbounded().maximumEntries(1));
+    ModuleSource source = source("/dir/index.js", "1");
+
+    cache.put("/dir", source);
+    cache.put("/dir/index", source);
+
+    assertEquals(1, cache.size());
+    assertSame(source, cache.get("/dir"));
+    assertSame(source, cache.get("/dir/index"));
+    assertSame(source, cache.get("/dir/index.js"));
+  }
+
+  @Test
+  public void sourcesExpireWhenNotAccessedForTooLong() {
+    AtomicLong time = new AtomicLong();
+    ModuleCache cache =
+        new ModuleCache(
+            ModuleCachePolicy.unbounded()
+                .expireAfterAccess(10, TimeUnit.NANOSECONDS)
+                .ticker(time::get));
+
+    cache.put("/file1", source("/file1.js", "1"));
+    time.addAndGet(5);
+    assertNotNull(cache.get("/file1"));
+    time.addAndGet(8);
+    assertNotNull(cache.get("/file1"));
+    time.addAndGet(11);
+    assertNull(cache.get("/file1"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void statsCountHitsMissesAndLoads() {
+    ModuleSource source = source("/file1.js", "1");
+    cache.load("/file1", () -> source);
+    cache.load("/file1", () -> source);
+    cache.load("/file1.js", () -> source);
+    cache.load("/invalid", () -> null);
+
+    ModuleCacheStats stats = cache.stats();
+    assertEquals(2, stats.getHitCount());
+    assertEquals(2, stats.getMissCount());
+    assertEquals(2, stats.getLoadCount());
+    assertEquals(0, stats.getEvictionCount());
+    assertEquals(1, stats.getEntryCount());
+  }
+
+  private ModuleSource source(String path, String code) {
+    return new ModuleSource(folder, path, code);
+  }
+}
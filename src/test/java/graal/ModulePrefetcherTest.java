@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.graalvm.polyglot.Context;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModulePrefetcherTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+  // Which thread read each file first
+  private Map<String, String> readers = new ConcurrentHashMap<>();
+  private ModulePrefetcher prefetcher;
+  private ResolutionCache resolutions;
+  private Context context;
+
+  @Before
+  public void before() throws Throwable {
+    root = temporaryFolder.newFolder("root");
+    // Keeps the module busy long enough for its children to be read in the background
+    write(
+        "a.js",
+        "var start = Date.now(); while (Date.now() - start < 500) {}\n"
+            + "exports.value = require('./b').value + require('dep').value;");
+    write("b.js", "exports.value = 1;");
+    write("node_modules/dep/index.js", "exports.value = 2;");
+
+    prefetcher = ModulePrefetcher.create(2);
+    resolutions = new ResolutionCache();
+    context = Context.create();
+    Require.enable(
+        context,
+        new RecordingFolder(FilesystemFolder.create(root, "UTF-8"), null),
+        RequireOptions.create().withPrefetcher(prefetcher).withResolutionCache(resolutions));
+  }
+
+  @After
+  public void after() {
+    context.close();
+    prefetcher.close();
+  }
+
+  @Test
+  public void childrenAreReadInTheBackgroundWhileTheirParentRuns() throws Throwable {
+    assertEquals(3, context.eval("js", "require('./a').value").asInt());
+
+    assertEquals(Thread.currentThread().getName(), readers.get("a.js"));
+    assertEquals("module-prefetcher", readers.get("b.js"));
+    assertEquals("module-prefetcher", readers.get("index.js"));
+    String rootPath = root.getAbsolutePath() + File.separator;
+    assertEquals(rootPath + "b.js", resolutions.get(rootPath, "./b"));
+  }
+
+  @Test
+  public void closedPrefetchersAreIgnored() throws Throwable {
+    prefetcher.close();
+    assertEquals(3, context.eval("js", "require('./a').value").asInt());
+    assertFalse(readers.containsValue("module-prefetcher"));
+    assertTrue(readers.containsKey("b.js"));
+  }
+
+  private void write(String name, String code) throws Throwable {
+    File file = new File(root, name);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private class RecordingFolder implements Folder {
+    private final Folder folder;
+    private final Folder parent;
+
+    RecordingFolder(Folder folder, Folder parent) {
+      this.folder = folder;
+      this.parent = parent;
+    }
+
+    @Override
+    public Folder getParent() {
+      return parent;
+    }
+
+    @Override
+    public String getPath() {
+      return folder.getPath();
+    }
+
+    @Override
+    public String getFile(String name) {
+      String code = folder.getFile(name);
+      if (code != null) {
+        readers.putIfAbsent(name, Thread.currentThread().getName());
+      }
+      return code;
+    }
+
+    @Override
+    public Folder getFolder(String name) {
+      Folder child = folder.getFolder(name);
+      return child != null ? new RecordingFolder(child, this) : null;
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.graalvm.polyglot.Context;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModulePreloaderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+  private Set<String> readingThreads = ConcurrentHashMap.newKeySet();
+  private Context context;
+  private Module require;
+
+  @Before
+  public void before() throws Throwable {
+    Module.resetThreadState();
+    root = temporaryFolder.newFolder("root");
+    write("a.js", "exports.b = require('./lib/b').value; order.push('a');");
+    write("lib/b.js", "exports.value = require('dep').value; order.push('b');");
+    write("node_modules/dep/package.json", "{ \"main\": \"./main\" }");
+    write("node_modules/dep/main.js", "order.push('dep'); exports.value = 42;");
+    write("c.js", "order.push('c');");
+
+    context = Context.create();
+    context.eval("js", "var order = [];");
+    require =
+        Require.enable(
+            context,
+            new RecordingFolder(FilesystemFolder.create(root, "UTF-8")),
+            RequireOptions.create().withResolutionCache(new ResolutionCache()));
+  }
+
+  @Test
+  public void modulesAreReadOnThePoolAndEvaluatedInDependencyOrder() throws Throwable {
+    Require.preload(require, Arrays.asList("./a", "./c", "./invalid"), 4);
+
+    assertEquals("dep,b,a,c", context.eval("js", "order.join()").asString());
+    assertFalse(readingThreads.isEmpty());
+    assertTrue(readingThreads.stream().allMatch(name -> name.equals("module-preloader")));
+
+    readingThreads.clear();
+    assertEquals(42, context.eval("js", "require('./a').b").asInt());
+    assertEquals(42, context.eval("js", "require('dep').value").asInt());
+    assertTrue(readingThreads.isEmpty());
+  }
+
+  @Test
+  public void modulesCanBePreloadedFromAManifest() throws Throwable {
+    Path manifest = temporaryFolder.newFile("manifest").toPath();
+    Files.write(
+        manifest,
+        "# recorded\n./c\t12\n\n./lib/b\n./invalid\n".getBytes(StandardCharsets.UTF_8));
+
+    Require.preload(require, manifest, 2);
+
+    assertEquals("c,dep,b", context.eval("js", "order.join()").asString());
+  }
+
+  private void write(String name, String code) throws Throwable {
+    File file = new File(root, name);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // Remembers which threads read files
+  private class RecordingFolder implements Folder {
+    private final Folder folder;
+    private final Folder parent;
+
+    RecordingFolder(Folder folder) {
+      this(folder, null);
+    }
+
+    RecordingFolder(Folder folder, Folder parent) {
+      this.folder = folder;
+      this.parent = parent;
+    }
+
+    @Override
+    public Folder getParent() {
+      return parent;
+    }
+
+    @Override
+    public String getPath() {
+      return folder.getPath();
+    }
+
+    @Override
+    public String getFile(String name) {
+      readingThreads.add(Thread.currentThread().getName());
+      return folder.getFile(name);
+    }
+
+    @Override
+    public Folder getFolder(String name) {
+      Folder child = folder.getFolder(name);
+      return child != null ? new RecordingFolder(child, this) : null;
+    }
+  }
+}
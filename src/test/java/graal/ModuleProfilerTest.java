@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.graalvm.polyglot.Context;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModuleProfilerTest {
+  private ModuleProfiler profiler = new ModuleProfiler();
+  private Context context;
+
+  @Before
+  public void before() {
+    Folder root = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFile("index.js")).thenReturn("require('./a'); require('./b');");
+    when(root.getFile("a.js")).thenReturn("require('./b'); require('./data.json');");
+    when(root.getFile("b.js")).thenReturn("for (var i = 0; i < 1000; i++) {}");
+    when(root.getFile("data.json")).thenReturn("{}");
+    when(root.getFile("flaky.js"))
+        .thenReturn("if (typeof tried === 'undefined') { tried = true; throw new Error(); }");
+    when(root.getFile("broken.json")).thenReturn("{");
+    context = Context.create();
+    Require.enable(context, root, RequireOptions.create().withListener(profiler));
+    context.eval("js", "require('./index')");
+  }
+
+  @After
+  public void after() {
+    context.close();
+  }
+
+  @Test
+  public void modulesArePlacedInTheRequireTree() {
+    Map<String, ModuleProfile> profiles = getProfiles();
+    assertEquals(4, profiles.size());
+
+    ModuleProfile index = profiles.get("/index.js");
+    assertNull(index.getParent());
+    assertEquals(0, index.getDepth());
+    assertEquals(Arrays.asList("/a.js", "/b.js"), index.getRequires());
+
+    ModuleProfile b = profiles.get("/b.js");
+    assertEquals("/a.js", b.getParent());
+    assertEquals("./b", b.getSpecifier());
+    assertEquals(2, b.getDepth());
+    assertEquals(1, b.getLoadCount());
+    assertEquals("/a.js", profiles.get("/data.json").getParent());
+  }
+
+  @Test
+  public void failedLoadsAreLeftOut() {
+    context.eval("js", "try { require('./flaky'); } catch (e) {} require('./flaky');");
+    context.eval("js", "try { require('./broken.json'); } catch (e) {}");
+
+    Map<String, ModuleProfile> profiles = getProfiles();
+    assertEquals(5, profiles.size());
+    assertEquals(1, profiles.get("/flaky.js").getLoadCount());
+    assertNull(profiles.get("/broken.json"));
+  }
+
+  @Test
+  public void exclusiveTimesLeaveOutChildren() {
+    Map<String, ModuleProfile> profiles = getProfiles();
+    ModuleProfile index = profiles.get("/index.js");
+    ModuleProfile a = profiles.get("/a.js");
+    assertTrue(index.getInclusiveNanos() >= a.getInclusiveNanos());
+    assertTrue(a.getInclusiveNanos() >= profiles.get("/b.js").getInclusiveNanos());
+    assertTrue(index.getExclusiveNanos() <= index.getInclusiveNanos() - a.getInclusiveNanos());
+    assertEquals(
+        a.getInclusiveNanos()
+            - profiles.get("/b.js").getInclusiveNanos()
+            - profiles.get("/data.json").getInclusiveNanos(),
+        a.getExclusiveNanos());
+  }
+
+  @Test
+  public void collapsedStacksFollowTheTree() throws Throwable {
+    StringWriter writer = new StringWriter();
+    profiler.writeCollapsedStacks(writer);
+    String[] lines = writer.toString().split("\n");
+
+    assertEquals(4, lines.length);
+    assertTrue(lines[0].matches("/index\\.js;/a\\.js;/b\\.js \\d+"));
+    assertTrue(lines[1].matches("/index\\.js;/a\\.js;/data\\.json \\d+"));
+    assertTrue(lines[2].matches("/index\\.js;/a\\.js \\d+"));
+    assertTrue(lines[3].matches("/index\\.js \\d+"));
+  }
+
+  @Test
+  public void graphsCanBeWrittenAsJsonAndDot() throws Throwable {
+    StringWriter json = new StringWriter();
+    profiler.writeJson(json);
+    Map<?, ?> parsed = (Map<?, ?>) JsonParser.parse(json.toString());
+    List<?> modules = (List<?>) parsed.get("modules");
+    assertEquals(4, modules.size());
+    assertEquals("./b", ((Map<?, ?>) modules.get(0)).get("specifier"));
+
+    StringWriter dot = new StringWriter();
+    profiler.writeDot(dot);
+    assertTrue(dot.toString().contains("\"/a.js\" -> \"/b.js\";"));
+    assertTrue(dot.toString().contains("\"/index.js\" -> \"/b.js\" [style=dashed];"));
+  }
+
+  private Map<String, ModuleProfile> getProfiles() {
+    Map<String, ModuleProfile> profiles = new HashMap<>();
+    for (ModuleProfile profile : profiler.getProfiles()) {
+      profiles.put(profile.getPath(), profile);
+    }
+    return profiles;
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.graalvm.polyglot.Context;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModuleRecorderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+
+  @Before
+  public void before() throws Throwable {
+    Module.resetThreadState();
+    root = temporaryFolder.newFolder("root");
+    // The computed specifier can't be found by scanning, only by recording
+    write("a.js", "var name = 'b'; exports.b = require('./lib/' + name).value; order.push('a');");
+    write("lib/b.js", "exports.value = require('dep').value; order.push('b');");
+    write("node_modules/dep/index.js", "exports.value = 42; order.push('dep');");
+  }
+
+  @Test
+  public void resolutionsAreRecordedInOrderWithRelativePaths() throws Throwable {
+    ModuleRecorder recorder = new ModuleRecorder();
+    Context context = createContext(RequireOptions.create().withRecorder(recorder));
+    context.eval("js", "require('./a'); require('./a'); require('./lib/b.js')");
+
+    StringWriter manifest = new StringWriter();
+    recorder.write(manifest);
+    String[] lines = manifest.toString().split("\n");
+
+    // Times are only given the first time a module appears
+    assertEquals(4, recorder.size());
+    assertEquals(5, lines.length);
+    assertEquals(ModuleRecorder.HEADER, lines[0]);
+    assertTrue(lines[1].startsWith("./a\t/\t/a.js\t0\t"));
+    assertTrue(lines[1].endsWith("\t<main>"));
+    assertTrue(lines[2].startsWith("./lib/b\t/\t/lib/b.js\t1\t"));
+    assertTrue(lines[2].endsWith("\t/a.js"));
+    assertTrue(lines[3].startsWith("dep\t/lib/\t/node_modules/dep/index.js\t2\t"));
+    assertTrue(lines[3].endsWith("\t/lib/b.js"));
+    assertEquals("./lib/b.js\t/\t/lib/b.js\t3\t0\t0\t0\t<main>", lines[4]);
+  }
+
+  @Test
+  public void onlyTheRequiresOfTheHostAreReplayedAsTopLevelRequires() throws Throwable {
+    ModuleRecorder recorder = new ModuleRecorder();
+    Context recording = createContext(RequireOptions.create().withRecorder(recorder));
+    recording.eval("js", "require('./a')");
+    Path manifest = temporaryFolder.newFile("manifest").toPath();
+    recorder.write(manifest);
+
+    Module require = Require.enable(Context.create(), FilesystemFolder.create(root, "UTF-8"));
+    List<String> specifiers = new ArrayList<>();
+    List<String> resolvedPaths = new ArrayList<>();
+    ModulePreloader.readManifest(require, manifest, specifiers, resolvedPaths);
+
+    // ./lib/b is required from the root folder too, but by a.js
+    String rootPath = root.getAbsolutePath() + File.separator;
+    assertEquals(Collections.singletonList("./a"), specifiers);
+    assertEquals(
+        Arrays.asList(rootPath + "lib/b.js", rootPath + "node_modules/dep/index.js"),
+        resolvedPaths);
+  }
+
+  @Test
+  public void manifestPathsGetTheSeparatorsOfTheRootFolderBack() {
+    assertEquals("/root/lib/b.js", ModuleRecorder.toFolderPath("/root/", "/lib/b.js"));
+    assertEquals("C:\\root\\lib\\b.js", ModuleRecorder.toFolderPath("C:\\root\\", "/lib/b.js"));
+  }
+
+  @Test
+  public void recordedManifestsCanBeReplayed() throws Throwable {
+    ModuleRecorder recorder = new ModuleRecorder();
+    Context recording = createContext(RequireOptions.create().withRecorder(recorder));
+    recording.eval("js", "require('./a')");
+    Path manifest = temporaryFolder.newFile("manifest").toPath();
+    recorder.write(manifest);
+
+    ResolutionCache resolutions = new ResolutionCache();
+    Context context = Context.create();
+    context.eval("js", "var order = [];");
+    Module require =
+        Require.enable(
+            context,
+            FilesystemFolder.create(root, "UTF-8"),
+            RequireOptions.create().withResolutionCache(resolutions));
+    // Replaying happens in a fresh process, not on the thread that just did the recording
+    Module.resetThreadState();
+    Require.preload(require, manifest, 2);
+
+    String rootPath = root.getAbsolutePath() + File.separator;
+    assertEquals("dep,b,a", context.eval("js", "order.join()").asString());
+    assertEquals(3, resolutions.size());
+    assertEquals(rootPath + "lib/b.js", resolutions.get(rootPath, "./lib/b"));
+  }
+
+  private Context createContext(RequireOptions options) throws Throwable {
+    Context context = Context.create();
+    context.eval("js", "var order = [];");
+    Require.enable(context, FilesystemFolder.create(root, "UTF-8"), options);
+    return context;
+  }
+
+  private void write(String name, String code) throws Throwable {
+    File file = new File(root, name);
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), code.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.graalvm.polyglot.Context;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ModuleWatcherTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File root;
+  private ModuleWatcher watcher;
+  private Context context;
+
+  @Before
+  public void before() throws Throwable {
+    root = temporaryFolder.getRoot();
+    write("a.js", "exports.b = require('./b').value;");
+    write("b.js", "exports.value = 1;");
+    write("c.js", "exports.random = Math.random();");
+
+    watcher = ModuleWatcher.start(root);
+    context = Context.create();
+    Require.enable(
+        context,
+        FilesystemFolder.create(root, "UTF-8"),
+        RequireOptions.create()
+            .withResolutionCache(new ResolutionCache())
+            .withNegativeCache(new NegativeCache(1, TimeUnit.MINUTES))
+            .withWatcher(watcher));
+  }
+
+  @After
+  public void after() throws Throwable {
+    context.close();
+    watcher.close();
+  }
+
+  @Test
+  public void changedModulesAndTheirParentsAreLoadedAgain() throws Throwable {
+    assertEquals(1, context.eval("js", "require('./a').b").asInt());
+    double random = context.eval("js", "require('./c').random").asDouble();
+
+    write("b.js", "exports.value = 2;");
+    watcher.changed(new File(root, "b.js").getAbsoluteFile().toPath(), false);
+
+    assertEquals(2, context.eval("js", "require('./b').value").asInt());
+    assertEquals(2, context.eval("js", "require('./a').b").asInt());
+    assertEquals(random, context.eval("js", "require('./c').random").asDouble(), 0.0);
+  }
+
+  @Test
+  public void newFilesAreFoundAfterAFailedRequire() throws Throwable {
+    String code =
+        "(function() { try { return require('./d').value; } catch (ex) { return 0; } })()";
+    assertEquals(0, context.eval("js", code).asInt());
+
+    write("d.js", "exports.value = 4;");
+    watcher.changed(new File(root, "d.js").getAbsoluteFile().toPath(), true);
+
+    assertEquals(4, context.eval("js", code).asInt());
+  }
+
+  @Test
+  public void changingTheMainOfAPackageChangesWhatItResolvesTo() throws Throwable {
+    new File(root, "pkg").mkdir();
+    write("pkg/package.json", "{ \"main\": \"a.js\" }");
+    write("pkg/a.js", "exports.value = 'a';");
+    write("pkg/b.js", "exports.value = 'b';");
+    assertEquals("a", context.eval("js", "require('./pkg').value").asString());
+
+    write("pkg/package.json", "{ \"main\": \"b.js\" }");
+    watcher.changed(new File(root, "pkg/package.json").getAbsoluteFile().toPath(), false);
+
+    assertEquals("b", context.eval("js", "require('./pkg').value").asString());
+  }
+
+  @Test
+  public void changesOnDiskAreNoticedByTheWatcher() throws Throwable {
+    assertEquals(1, context.eval("js", "require('./a').b").asInt());
+
+    write("b.js", "exports.value = 3;");
+
+    long deadline = System.currentTimeMillis() + 10000;
+    int value = 1;
+    while (value != 3 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+      value = context.eval("js", "require('./a').b").asInt();
+    }
+    assertEquals(3, value);
+  }
+
+  @Test
+  public void changesAreStillNoticedAfterADirectoryVanishedBeforeBeingWatched()
+      throws Throwable {
+    assertEquals(1, context.eval("js", "require('./a').b").asInt());
+
+    // The watcher only gets to a new directory after it was deleted again
+    File directory = new File(root, "gone");
+    new File(directory, "sub").mkdirs();
+    new File(directory, "sub").delete();
+    directory.delete();
+    watcher.directoryCreated(directory.getAbsoluteFile().toPath());
+    assertEquals(1, context.eval("js", "require('./a').b").asInt());
+
+    write("b.js", "exports.value = 5;");
+
+    long deadline = System.currentTimeMillis() + 10000;
+    int value = 1;
+    while (value != 5 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+      value = context.eval("js", "require('./a').b").asInt();
+    }
+    assertEquals(5, value);
+  }
+
+  private void write(String name, String code) throws Throwable {
+    Files.write(new File(root, name).toPath(), code.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.graalvm.polyglot.Context;
+import org.junit.Test;
+
+public class NegativeCacheTest {
+  private AtomicLong time = new AtomicLong();
+  private NegativeCache cache = new NegativeCache(10, 100, time::get);
+
+  @Test
+  public void missesAreRememberedUntilTheyExpire() {
+    cache.recordMissing("/", "file1.js");
+    assertTrue(cache.isMissing("/", "file1.js"));
+    assertFalse(cache.isMissing("/", "file2.js"));
+    assertFalse(cache.isMissing("/sub1/", "file1.js"));
+
+    time.addAndGet(10);
+    assertTrue(cache.isMissing("/", "file1.js"));
+    time.addAndGet(1);
+    assertFalse(cache.isMissing("/", "file1.js"));
+  }
+
+  @Test
+  public void filesAndFoldersAreRememberedSeparately() {
+    cache.recordMissing("/", "lodash");
+    assertTrue(cache.isMissing("/", "lodash"));
+    assertFalse(cache.isFolderMissing("/", "lodash"));
+
+    cache.recordFolderMissing("/", "lodash");
+    assertTrue(cache.isFolderMissing("/", "lodash"));
+    assertEquals(2, cache.size());
+
+    cache.invalidate("/", "lodash");
+    assertFalse(cache.isMissing("/", "lodash"));
+    assertFalse(cache.isFolderMissing("/", "lodash"));
+  }
+
+  @Test
+  public void expiredMissesAreSweptWhenTheCacheIsFull() {
+    NegativeCache bounded = new NegativeCache(10, 4, time::get);
+    bounded.recordMissing("/sub1/", "file1.js");
+    bounded.recordMissing("/sub1/", "file2.js");
+    bounded.recordMissing("/sub2/", "file1.js");
+    time.addAndGet(11);
+    bounded.recordMissing("/", "file1.js");
+    bounded.recordMissing("/", "file2.js");
+
+    assertEquals(2, bounded.size());
+    assertTrue(bounded.isMissing("/", "file1.js"));
+    assertTrue(bounded.isMissing("/", "file2.js"));
+  }
+
+  @Test
+  public void theCacheIsClearedWhenMostMissesAreStillLive() {
+    NegativeCache bounded = new NegativeCache(10, 4, time::get);
+    for (int i = 0; i < 5; i++) {
+      bounded.recordMissing("/", "file" + i + ".js");
+    }
+    assertEquals(0, bounded.size());
+
+    bounded.recordMissing("/", "file1.js");
+    assertTrue(bounded.isMissing("/", "file1.js"));
+  }
+
+  @Test
+  public void invalidatedFoldersMakeRoomForNewMisses() {
+    NegativeCache bounded = new NegativeCache(10, 4, time::get);
+    bounded.recordMissing("/sub1/", "file1.js");
+    bounded.recordMissing("/sub1/sub1/", "file1.js");
+    bounded.recordMissing("/sub2/", "file1.js");
+    bounded.invalidateFolder("/sub1/");
+
+    // Filling the cache up to its size again doesn't sweep the expired miss away
+    time.addAndGet(11);
+    for (int i = 0; i < 3; i++) {
+      bounded.recordMissing("/", "file" + i + ".js");
+    }
+    assertEquals(4, bounded.size());
+  }
+
+  @Test
+  public void missesCanBeInvalidatedExplicitly() {
+    cache.recordMissing("/", "file1.js");
+    cache.recordMissing("/", "file2.js");
+    cache.recordMissing("/sub1/", "file1.js");
+    cache.recordMissing("/sub1/sub1/", "file1.js");
+    cache.recordMissing("/sub2/", "file1.js");
+
+    cache.invalidate("/", "file1.js");
+    assertFalse(cache.isMissing("/", "file1.js"));
+    assertTrue(cache.isMissing("/", "file2.js"));
+
+    cache.invalidateFolder("/sub1/");
+    assertFalse(cache.isMissing("/sub1/", "file1.js"));
+    assertFalse(cache.isMissing("/sub1/sub1/", "file1.js"));
+    assertTrue(cache.isMissing("/sub2/", "file1.js"));
+
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void failedRequiresDoNotProbeTheFoldersAgain() throws Throwable {
+    Folder root = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+
+    try (Context context = Context.create()) {
+      Require.enable(
+          context,
+          root,
+          RequireOptions.create().withNegativeCache(new NegativeCache(1, TimeUnit.MINUTES)));
+
+      for (int i = 0; i < 3; i++) {
+        try {
+          context.eval("js", "require('optional')");
+          fail("should throw exception");
+        } catch (Exception expected) {
+        }
+      }
+    }
+
+    verify(root, times(1)).getFolder("node_modules");
+  }
+
+  @Test
+  public void folderModulesResolveAfterTheirFileWasFoundMissing() throws Throwable {
+    Folder root = mock(Folder.class);
+    Folder nodeModules = mock(Folder.class);
+    Folder lodash = mock(Folder.class);
+    Folder sub = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFolder("node_modules")).thenReturn(nodeModules);
+    when(root.getFolder("sub")).thenReturn(sub);
+    when(nodeModules.getPath()).thenReturn("/node_modules/");
+    when(nodeModules.getFolder("lodash")).thenReturn(lodash);
+    when(lodash.getPath()).thenReturn("/node_modules/lodash/");
+    when(lodash.getFile("index.js")).thenReturn("exports.name = 'lodash';");
+    when(sub.getPath()).thenReturn("/sub/");
+    when(sub.getFile("index.js")).thenReturn("exports.name = 'sub';");
+
+    NegativeCache negativeCache = new NegativeCache(1, TimeUnit.MINUTES);
+    try (Context context = Context.create()) {
+      Require.enable(context, root, RequireOptions.create().withNegativeCache(negativeCache));
+      assertEquals("lodash", context.eval("js", "require('lodash').name").asString());
+      assertEquals("sub", context.eval("js", "require('./sub').name").asString());
+    }
+
+    assertTrue(negativeCache.isMissing("/node_modules/", "lodash"));
+    assertFalse(negativeCache.isFolderMissing("/node_modules/", "lodash"));
+  }
+}
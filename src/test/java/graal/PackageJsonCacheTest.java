@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.junit.Test;
+
+public class PackageJsonCacheTest {
+  @Test
+  public void onlyMainIsReadFromPackageJson() {
+    assertEquals(
+        "lib/index.js",
+        PackageJson.parse(
+                "{ \"name\": \"x\", \"scripts\": { \"main\": \"nope\", \"a\": [1, \"}\"] },\n"
+                    + "  \"main\": \"lib/index.js\", \"version\": \"1.0.0\" }")
+            .getMain());
+    assertNull(PackageJson.parse("{ \"main\": 12 }").getMain());
+    assertNull(PackageJson.parse("{ }").getMain());
+    assertNull(PackageJson.parse("[]").getMain());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidPackageJsonIsRejected() {
+    PackageJson.parse("{ \"main\": \"index.js\" ");
+  }
+
+  @Test
+  public void packageJsonIsOnlyReadOnceForAllContexts() throws Throwable {
+    Folder root = mock(Folder.class);
+    Folder dir = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFolder("dir")).thenReturn(dir);
+    when(dir.getPath()).thenReturn("/dir/");
+    when(dir.getParent()).thenReturn(root);
+    when(dir.getFile("package.json")).thenReturn("{ \"main\": \"foo.js\" }");
+    when(dir.getFile("foo.js")).thenReturn("exports.foo = 'foo';");
+
+    PackageJsonCache cache = new PackageJsonCache();
+    for (int i = 0; i < 2; i++) {
+      Context context = Context.create();
+      Require.enable(context, root, RequireOptions.create().withPackageJsonCache(cache));
+      assertEquals("foo", context.eval("js", "require('./dir').foo").asString());
+      context.close();
+    }
+
+    assertEquals(1, cache.size());
+    verify(dir, times(1)).getFile("package.json");
+  }
+
+  @Test(expected = PolyglotException.class)
+  public void invalidPackageJsonFailsTheRequire() throws Throwable {
+    Folder root = mock(Folder.class);
+    Folder dir = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFolder("dir")).thenReturn(dir);
+    when(dir.getFile("package.json")).thenReturn("{ \"main\": ");
+
+    Context context = Context.create();
+    Require.enable(context, root);
+    context.eval("js", "require('./dir')");
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PathsTest {
+  @Test
+  public void splitPathMatchesTheRegexSplit() {
+    String[] paths = {
+      "", "/", "//", "a", "./a", "../a/b", "/a/b/", "a//b", "a\\b\\c", "\\a", "a/b\\\\", "./a/"
+    };
+    for (String path : paths) {
+      assertArrayEquals(path, path.split("[\\\\/]"), Paths.splitPath(path));
+    }
+  }
+
+  @Test
+  public void modulePathsAreSplitIntoFoldersAndName() {
+    ModulePath path = ModulePath.parse("../sub1/file1.js");
+    assertEquals(2, path.getFolderCount());
+    assertEquals("..", path.getParts()[0]);
+    assertEquals("file1.js", path.getName());
+    assertNull(ModulePath.parse("/"));
+  }
+
+  @Test
+  public void modulePathsAreShared() {
+    assertSame(ModulePath.parse("./shared/file1"), ModulePath.parse("./shared/file1"));
+  }
+
+  @Test
+  public void pathKeysAreShared() {
+    PathKeys keys = new PathKeys();
+    String key = keys.join("/sub1/", "file1");
+    assertEquals("/sub1/file1", key);
+    assertSame(key, keys.join(new String("/sub1/"), new String("file1")));
+    assertEquals(1, keys.size());
+  }
+
+  @Test
+  public void pathKeysStopBeingInternedWhenFull() {
+    PathKeys keys = new PathKeys(1);
+    keys.join("/", "file1");
+    assertEquals("/file2", keys.join("/", "file2"));
+    assertEquals(1, keys.size());
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import graal.RequireListener.Cache;
+import graal.RequireMetrics.Phase;
+import java.util.Map;
+import org.graalvm.polyglot.Context;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
+
+public class RequireMetricsTest {
+  private Folder root;
+  private Context context;
+  private RequireMetrics metrics = new RequireMetrics();
+
+  @Before
+  public void before() {
+    root = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFile("a.js")).thenReturn("exports.b = require('./b');");
+    when(root.getFile("b.js")).thenReturn("exports.value = 1;");
+    context = Context.create();
+  }
+
+  @After
+  public void after() {
+    context.close();
+  }
+
+  @Test
+  public void phasesAreCountedAndTimed() throws Throwable {
+    Require.enable(context, root, RequireOptions.create().withListener(metrics));
+    context.eval("js", "require('./a'); require('./a')");
+
+    assertEquals(3, metrics.getCount(Phase.RESOLVE));
+    assertEquals(2, metrics.getCount(Phase.READ));
+    assertEquals(2, metrics.getCount(Phase.COMPILE));
+    assertEquals(2, metrics.getCount(Phase.EXECUTE));
+    // "./a" is looked up as a and then as a.js
+    assertEquals(4, metrics.getCount(Phase.FILE_PROBE));
+    assertEquals(2, metrics.getFileMisses());
+    assertEquals(
+        "exports.b = require('./b');".length() + "exports.value = 1;".length(),
+        metrics.getCharsRead());
+    assertTrue(metrics.getTotalNanos(Phase.EXECUTE) >= metrics.getMaxNanos(Phase.EXECUTE));
+    assertTrue(metrics.getMaxNanos(Phase.EXECUTE) > 0);
+
+    assertEquals(1, metrics.getCacheHits(Cache.MODULE));
+    assertEquals(2, metrics.getCacheMisses(Cache.MODULE));
+    assertEquals(1, metrics.getCacheHits(Cache.LOADED));
+  }
+
+  @Test
+  public void missesAreCounted() throws Throwable {
+    Require.enable(context, root, RequireOptions.create().withListener(metrics));
+    try {
+      context.eval("js", "require('./missing')");
+    } catch (Exception ex) {
+      // Expected
+    }
+
+    assertEquals(1, metrics.getNotFound());
+    assertEquals(3, metrics.getFileMisses());
+    assertTrue(metrics.getFolderMisses() > 0);
+
+    Map<String, Long> snapshot = metrics.snapshot();
+    assertEquals(1L, (long) snapshot.get("resolve.count"));
+    assertEquals(1L, (long) snapshot.get("resolve.not_found"));
+    assertEquals(3L, (long) snapshot.get("file_probe.misses"));
+  }
+
+  @Test
+  public void resolutionCacheHitsAreReported() throws Throwable {
+    Require.enable(
+        context,
+        root,
+        RequireOptions.create()
+            .withResolutionCache(new ResolutionCache())
+            .withListener(metrics));
+    context.eval("js", "require('./b'); require('./b')");
+
+    assertEquals(1, metrics.getCacheMisses(Cache.RESOLUTION));
+    assertEquals(1, metrics.getCacheHits(Cache.RESOLUTION));
+    assertEquals(1, metrics.getCount(Phase.RESOLVE));
+  }
+
+  @Test
+  public void eventsArePassedToEveryListenerInOrder() throws Throwable {
+    RequireListener first = mock(RequireListener.class);
+    RequireListener second = mock(RequireListener.class);
+    Require.enable(
+        context, root, RequireOptions.create().withListener(RequireListener.all(first, second)));
+    context.eval("js", "require('./b')");
+
+    InOrder order = inOrder(first, second);
+    order.verify(first).resolveStarted("/", "./b");
+    order.verify(second).resolveStarted("/", "./b");
+    order.verify(first).resolveEnded(
+        ArgumentMatchers.eq("/"),
+        ArgumentMatchers.eq("./b"),
+        ArgumentMatchers.eq("/b.js"),
+        ArgumentMatchers.anyLong());
+    order.verify(first).compileStarted("/b.js");
+    order.verify(first).executeStarted("/b.js");
+    order.verify(first).executeEnded(ArgumentMatchers.eq("/b.js"), ArgumentMatchers.anyLong());
+  }
+}
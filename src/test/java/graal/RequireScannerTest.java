@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+public class RequireScannerTest {
+  @Test
+  public void literalSpecifiersAreFoundInOrder() {
+    assertEquals(
+        Arrays.asList("./a", "b", "../c.json"),
+        RequireScanner.scan(
+            "const a = require('./a');\nvar b = require(\"b\").b;\nrequire( `../c.json` );"));
+  }
+
+  @Test
+  public void duplicatesAreOnlyReturnedOnce() {
+    assertEquals(
+        Collections.singletonList("./a"), RequireScanner.scan("require('./a'); require('./a');"));
+  }
+
+  @Test
+  public void commentsAndStringsAreIgnored() {
+    assertEquals(
+        Collections.singletonList("./d"),
+        RequireScanner.scan(
+            "// require('./a')\n/* require('./b') */\nvar s = \"require('./c')\";\n"
+                + "var t = 'it\\'s'; require('./d');"));
+  }
+
+  @Test
+  public void regularExpressionsAreSkipped() {
+    assertEquals(
+        Arrays.asList("./a", "./b", "./c"),
+        RequireScanner.scan(
+            "var q = /'/g; require('./a');\n"
+                + "if (/[/\"]/.test(s)) { require('./b'); }\n"
+                + "var half = total / 2, r = require('./c') / 2;"));
+  }
+
+  @Test
+  public void computedAndUnscannableRequiresAreCounted() {
+    RequireScanner scanner =
+        RequireScanner.scanned("require(name); require('./a'); require('./' + b);");
+    assertEquals(Collections.singletonList("./a"), scanner.getRequires());
+    assertEquals(2, scanner.getComputedRequires());
+    assertFalse(scanner.isIncomplete());
+
+    assertTrue(RequireScanner.scanned("var s = 'unterminated;\nrequire('./a');").isIncomplete());
+    assertTrue(RequireScanner.scanned("/* require('./a');").isIncomplete());
+  }
+
+  @Test
+  public void computedSpecifiersAndOtherFunctionsAreIgnored() {
+    assertEquals(
+        Collections.emptyList(),
+        RequireScanner.scan(
+            "require(name); require('./' + name); require(`./${name}`); foo.require('./a'); "
+                + "myrequire('./b'); require.resolve('./c'); require('./\\d')"));
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicReference;
+import org.graalvm.polyglot.Context;
+import org.junit.Test;
+
+public class ResolutionCacheTest {
+  private ResolutionCache cache = new ResolutionCache();
+
+  @Test
+  public void resolutionsAreKeptPerFolderAndSpecifier() {
+    cache.put("/", "./file1", "/file1.js");
+    cache.put("/sub1/", "../file1", "/file1.js");
+    assertEquals("/file1.js", cache.get("/", "./file1"));
+    assertEquals("/file1.js", cache.get("/sub1/", "../file1"));
+    assertNull(cache.get("/sub1/", "./file1"));
+  }
+
+  @Test
+  public void resolutionsCanBeInvalidatedByResolvedPath() {
+    cache.put("/", "./file1", "/file1.js");
+    cache.put("/sub1/", "../file1", "/file1.js");
+    cache.put("/", "./file2", "/file2.js");
+    cache.invalidate("/file1.js");
+    assertNull(cache.get("/", "./file1"));
+    assertNull(cache.get("/sub1/", "../file1"));
+    assertEquals("/file2.js", cache.get("/", "./file2"));
+  }
+
+  @Test
+  public void resolutionsCanBeExportedAndSeeded() throws Throwable {
+    cache.put("/", "./file1", "/file1.js");
+    cache.put("/sub1/", "nmfile1", "/node_modules/nmfile1.js");
+
+    StringWriter writer = new StringWriter();
+    cache.export(writer);
+    ResolutionCache seeded = new ResolutionCache();
+    seeded.seed(new StringReader(writer.toString()));
+
+    assertEquals(2, seeded.size());
+    assertEquals("/file1.js", seeded.get("/", "./file1"));
+    assertEquals("/node_modules/nmfile1.js", seeded.get("/sub1/", "nmfile1"));
+  }
+
+  @Test
+  public void warmRequiresDoNotWalkFolders() throws Throwable {
+    Folder root = mock(Folder.class);
+    Folder sub1 = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFolder("sub1")).thenReturn(sub1);
+    when(sub1.getPath()).thenReturn("/sub1/");
+    when(sub1.getFile("sub1file1.js")).thenReturn("exports.sub1file1 = 'sub1file1';");
+    ModuleCache moduleCache = new ModuleCache();
+    RequireOptions options =
+        RequireOptions.create().withModuleCache(moduleCache).withResolutionCache(cache);
+
+    for (int i = 0; i < 2; i++) {
+      try (Context context = Context.create()) {
+        Require.enable(context, root, options);
+        for (int j = 0; j < 3; j++) {
+          assertEquals(
+              "sub1file1",
+              context.eval("js", "require('./sub1/sub1file1').sub1file1").asString());
+        }
+      }
+    }
+
+    verify(root, times(1)).getFolder("sub1");
+    verify(sub1, times(1)).getFile("sub1file1.js");
+    assertEquals("/sub1/sub1file1.js", cache.get("/", "./sub1/sub1file1"));
+  }
+
+  @Test
+  public void filledCachesWorkOnThreadsThatNeverRequiredAnything() throws Throwable {
+    Folder root = mock(Folder.class);
+    when(root.getPath()).thenReturn("/");
+    when(root.getFile("file1.js")).thenReturn("exports.file1 = 'file1';");
+    cache.put("/", "./file1", "/file1.js");
+    RequireOptions options = RequireOptions.create().withResolutionCache(cache);
+
+    AtomicReference<Object> result = new AtomicReference<>();
+    try (Context context = Context.create()) {
+      Require.enable(context, root, options);
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  result.set(context.eval("js", "require('./file1').file1").asString());
+                } catch (RuntimeException ex) {
+                  result.set(ex);
+                }
+              });
+      thread.start();
+      thread.join();
+    }
+
+    assertEquals("file1", result.get());
+  }
+}
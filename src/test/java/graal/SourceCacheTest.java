@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.Source;
+import org.junit.After;
+import org.junit.Test;
+
+public class SourceCacheTest {
+  private Engine engine = Engine.create();
+  private FilesystemFolder root =
+      FilesystemFolder.create(new File("src/test/resources/graal/test1"), "UTF-8");
+
+  @After
+  public void after() {
+    engine.close();
+  }
+
+  @Test
+  public void theSameSourceIsReturnedForTheSamePathAndContent() {
+    SourceCache cache = new SourceCache();
+    Source first = cache.get("/foo.js", "exports.foo = 'foo';");
+    Source second = cache.get("/foo.js", "exports.foo = 'foo';");
+    assertSame(first, second);
+    assertEquals("/foo.js", first.getName());
+  }
+
+  @Test
+  public void aDifferentSourceReplacesTheOldOneWhenTheContentChanges() {
+    SourceCache cache = new SourceCache();
+    Source first = cache.get("/foo.js", "exports.foo = 'foo';");
+    Source second = cache.get("/foo.js", "exports.foo = 'bar';");
+    assertNotSame(first, second);
+    assertEquals(1, cache.size());
+    assertSame(second, cache.get("/foo.js", "exports.foo = 'bar';"));
+  }
+
+  @Test
+  public void eachEngineHasItsOwnCache() {
+    Engine other = Engine.create();
+    try {
+      assertSame(SourceCache.forEngine(engine), SourceCache.forEngine(engine));
+      assertNotSame(SourceCache.forEngine(engine), SourceCache.forEngine(other));
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void contextsOnASharedEngineReuseTheSameSources() throws Throwable {
+    for (int i = 0; i < 3; i++) {
+      try (Context context = Context.newBuilder("js").engine(engine).build()) {
+        Require.enable(context, root);
+        assertEquals("spam", context.eval("js", "require('./foo').bar.spam.spam").asString());
+      }
+    }
+    assertEquals(3, SourceCache.forEngine(engine).size());
+  }
+
+  @Test
+  public void moduleSourcesFollowTheCacheTheyAreEvaluatedThrough() {
+    ModuleSource source = new ModuleSource(root, "/foo.js", "exports.foo = 'foo';");
+    SourceCache first = new SourceCache();
+    SourceCache second = new SourceCache();
+    assertSame(first.get("/foo.js", "exports.foo = 'foo';"), source.getSource(first));
+    assertSame(second.get("/foo.js", "exports.foo = 'foo';"), source.getSource(second));
+    assertEquals(1, second.size());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 Transposit Corporation. All Rights Reserved.
+ */
+
+package graal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.graalvm.polyglot.Context;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipFolderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File archive;
+  private ZipFolder root;
+
+  @Before
+  public void before() throws Throwable {
+    // Only files are added, to make sure folders are found even without their own entries
+    archive = temporaryFolder.newFile("test1.zip");
+    File test1 = new File("src/test/resources/graal/test1");
+    try (ZipOutputStream stream = new ZipOutputStream(new FileOutputStream(archive))) {
+      for (String name : new String[] {"foo.js", "subdir/bar.js", "subdir/subsubdir/spam.js"}) {
+        stream.putNextEntry(new ZipEntry("modules/" + name));
+        stream.write(Files.readAllBytes(new File(test1, name).toPath()));
+        stream.closeEntry();
+      }
+    }
+    root = ZipFolder.open(archive.toPath(), "modules", "UTF-8");
+  }
+
+  @After
+  public void after() throws Throwable {
+    root.close();
+  }
+
+  @Test
+  public void rootFolderHasTheExpectedProperties() {
+    assertEquals("/", root.getPath());
+    assertNull(root.getParent());
+  }
+
+  @Test
+  public void getFileReturnsTheContentOfTheFileWhenItExists() {
+    assertTrue(root.getFile("foo.js").contains("foo"));
+    assertSame(root.getFile("foo.js"), root.getFile("foo.js"));
+  }
+
+  @Test
+  public void getFileReturnsNullWhenFileDoesNotExists() {
+    assertNull(root.getFile("invalid"));
+    assertNull(root.getFile("subdir"));
+  }
+
+  @Test
+  public void getFolderReturnsAnObjectWithTheExpectedProperties() {
+    Folder sub = root.getFolder("subdir");
+    assertEquals("/subdir/", sub.getPath());
+    assertSame(root, sub.getParent());
+    assertSame(sub, root.getFolder("subdir"));
+    Folder subsub = sub.getFolder("subsubdir");
+    assertEquals("/subdir/subsubdir/", subsub.getPath());
+    assertSame(sub, subsub.getParent());
+  }
+
+  @Test
+  public void getFolderReturnsNullWhenFolderDoesNotExist() {
+    assertNull(root.getFolder("invalid"));
+    assertNull(root.getFolder("foo.js"));
+  }
+
+  @Test
+  public void theWholeArchiveCanBeUsedAsRoot() throws Throwable {
+    try (ZipFolder whole = ZipFolder.open(archive.toPath())) {
+      assertTrue(whole.getFolder("modules").getFile("foo.js").contains("foo"));
+    }
+  }
+
+  @Test
+  public void zipFolderWorksWhenUsedForReal() throws Throwable {
+    Context context = Context.create();
+    Require.enable(context, root);
+    assertEquals("spam", context.eval("js", "require('./foo').bar.spam.spam").asString());
+  }
+}